@@ -1,26 +1,218 @@
 from mcp.server.fastmcp import FastMCP
 import requests
 from requests.exceptions import ConnectionError
+import http.client
+import json
+import socket
 import sys
+import threading
+import time
+from collections import OrderedDict
 
 # Create the MCP adapter with a human-readable name
 mcp = FastMCP("Jadx MCP Server")
 
-# Address of the Jadx MCP plugin's HTTP server
+# Address of the Jadx MCP plugin's HTTP server: http://host:port, or unix:/path/to/socket
 DEFAULT_MCP_SERVER = "http://localhost:8085"
 mcp_server = sys.argv[1] if len(sys.argv) > 1 else DEFAULT_MCP_SERVER
+UNIX_PREFIX = "unix:"
+
+# Total time to keep retrying while the plugin reports it is still loading (HTTP 503)
+MAX_RETRY_WAIT_SECONDS = 60
+
+# Responses tagged with an ETag by the plugin, revalidated with If-None-Match
+MAX_ETAG_CACHE_ENTRIES = 256
+etag_cache = OrderedDict()
+# Guards etag_cache and etag_invalidations, shared by request handlers and the event thread
+etag_lock = threading.Lock()
+# Bumped on every invalidation, so responses fetched across one are not cached
+etag_invalidations = 0
+
+
+class UnixHTTPConnection(http.client.HTTPConnection):
+    """HTTP connection over a Unix domain socket, for a plugin started with a unix: interface."""
+
+    def __init__(self, socket_path: str):
+        super().__init__("localhost")
+        self.socket_path = socket_path
+
+    def connect(self):
+        self.sock = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+        self.sock.connect(self.socket_path)
+
+
+class UnixResponse:
+    """Minimal stand-in for requests.Response for replies read from a Unix domain socket."""
+
+    def __init__(self, status_code: int, headers: dict, content: bytes):
+        self.status_code = status_code
+        self.headers = headers
+        self.content = content
+
+    def json(self):
+        return json.loads(self.content)
+
+    def raise_for_status(self):
+        if self.status_code >= 400:
+            raise RuntimeError(f"HTTP {self.status_code}")
+
+
+def http_request(method: str, path: str, payload: dict = None, headers: dict = {}):
+    """
+    Sends a request to the plugin over TCP, or over a Unix domain socket if the
+    server address starts with unix:.
+    """
+    if not mcp_server.startswith(UNIX_PREFIX):
+        return requests.request(method, f"{mcp_server}{path}", json=payload, headers=headers)
+
+    socket_path = mcp_server[len(UNIX_PREFIX):]
+    if socket_path.startswith("//"):
+        socket_path = socket_path[2:]
+    conn = UnixHTTPConnection(socket_path)
+    try:
+        body = json.dumps(payload) if payload is not None else None
+        request_headers = dict(headers)
+        if body is not None:
+            request_headers["Content-Type"] = "application/json"
+        conn.request(method, path, body=body, headers=request_headers)
+        resp = conn.getresponse()
+        return UnixResponse(resp.status, dict(resp.getheaders()), resp.read())
+    except (FileNotFoundError, ConnectionRefusedError) as e:
+        raise ConnectionError(str(e))
+    finally:
+        conn.close()
+
+
+def read_events(lines):
+    """
+    Parses Server-Sent Events from an iterator of text lines and yields (event, data) pairs.
+    """
+    event, data = "message", []
+    for line in lines:
+        if not line:
+            if data:
+                yield event, "\n".join(data)
+            event, data = "message", []
+        elif line.startswith("event:"):
+            event = line[6:].strip()
+        elif line.startswith("data:"):
+            data.append(line[5:].strip())
+
+
+def open_event_stream():
+    """
+    Opens the plugin's /events stream and returns an iterator of its lines.
+    """
+    if not mcp_server.startswith(UNIX_PREFIX):
+        resp = requests.get(f"{mcp_server}/events", stream=True, timeout=(5, 60))
+        resp.raise_for_status()
+        return resp.iter_lines(decode_unicode=True)
+
+    socket_path = mcp_server[len(UNIX_PREFIX):]
+    if socket_path.startswith("//"):
+        socket_path = socket_path[2:]
+    conn = UnixHTTPConnection(socket_path)
+    conn.request("GET", "/events")
+    resp = conn.getresponse()
+    if resp.status != 200:
+        conn.close()
+        raise RuntimeError(f"HTTP {resp.status}")
+    return (line.decode("utf-8").rstrip("\r\n") for line in resp)
+
+
+def drop_cached_classes(class_names: list):
+    """
+    Removes cached responses whose parameters name one of the classes or their inner classes.
+    """
+    global etag_invalidations
+    needles = [f'"class_name": "{name}' for name in class_names]
+    with etag_lock:
+        etag_invalidations += 1
+        for key in list(etag_cache):
+            for needle in needles:
+                index = key.find(needle)
+                if index >= 0 and key[index + len(needle):index + len(needle) + 1] in ('"', "$", "."):
+                    etag_cache.pop(key, None)
+                    break
+
+
+def clear_cache():
+    """
+    Removes all cached responses.
+    """
+    global etag_invalidations
+    with etag_lock:
+        etag_invalidations += 1
+        etag_cache.clear()
+
+
+def watch_invalidations():
+    """
+    Follows the plugin's invalidation events (renames, project reloads) and drops the
+    affected entries from the ETag cache. Reconnects with backoff while the plugin is away.
+    """
+    backoff = 1
+    while True:
+        try:
+            for event, data in read_events(open_event_stream()):
+                backoff = 1
+                if event != "invalidate":
+                    continue
+                notice = json.loads(data)
+                if notice.get("scope") == "all":
+                    clear_cache()
+                else:
+                    drop_cached_classes(notice.get("classes", []))
+        except Exception:
+            pass
+        # events may have been missed while disconnected
+        clear_cache()
+        time.sleep(backoff)
+        backoff = min(backoff * 2, 30)
+
 
 def invoke_jadx(tool: str, parameters: dict = {}) -> dict:
     """
     Internal helper to send a tool request to the Jadx MCP HTTP server.
+    Retries while the server answers 503 (input or index still loading), honoring Retry-After.
     """
     try:
-        resp = requests.post(f"{mcp_server}/invoke", json={"tool": tool, "parameters": parameters})
+        cache_key = tool + json.dumps(parameters, sort_keys=True)
+        with etag_lock:
+            cached = etag_cache.get(cache_key)
+            invalidations = etag_invalidations
+        headers = {"If-None-Match": cached[0]} if cached else {}
+        waited = 0
+        while True:
+            resp = http_request("POST", "/invoke", {"tool": tool, "parameters": parameters}, headers)
+            if resp.status_code != 503:
+                break
+            delay = int(resp.headers.get("Retry-After", "1"))
+            if waited + delay > MAX_RETRY_WAIT_SECONDS:
+                break
+            time.sleep(delay)
+            waited += delay
+        if resp.status_code == 503:
+            raise ValueError(resp.json().get("error", "Jadx MCP server is not ready yet."))
+        if resp.status_code == 304 and cached:
+            with etag_lock:
+                if cache_key in etag_cache:
+                    etag_cache.move_to_end(cache_key)
+            return cached[1]
         resp.raise_for_status()
         data = resp.json()
         if "error" in data:
             raise ValueError(data["error"])
-        return data.get("result", data)
+        result = data.get("result", data)
+        if "ETag" in resp.headers:
+            with etag_lock:
+                # skip responses that may predate a rename seen meanwhile
+                if invalidations == etag_invalidations:
+                    etag_cache[cache_key] = (resp.headers["ETag"], result)
+                    etag_cache.move_to_end(cache_key)
+                    while len(etag_cache) > MAX_ETAG_CACHE_ENTRIES:
+                        etag_cache.popitem(last=False)
+        return result
     except ConnectionError:
         raise ConnectionError("Jadx MCP server is not running. Please start Jadx and try again.")
     except Exception as e:
@@ -39,12 +231,62 @@ def list_all_classes(limit: int = 250, offset: int = 0) -> dict:
     return invoke_jadx("list_all_classes", {"limit": limit, "offset": offset})
 
 
+@mcp.tool()
+def list_packages(package: str = "", prefix: str = "", offset: int = 0, limit: int = 200,
+                  class_limit: int = 0) -> dict:
+    """
+    Lists the direct sub-packages of a package with their class counts. Start at the top level
+    and expand one package per call to learn the layout of a large APK.
+
+    Params:
+    - package: Package to expand, e.g. 'com.example' (default: top level)
+    - prefix: Only sub-packages whose name starts with this
+    - offset / limit: Pagination of the sub-packages (default 200)
+    - class_limit: Also list up to this many classes directly in the package (default 0)
+    """
+    return invoke_jadx("list_packages", {
+        "package": package,
+        "prefix": prefix,
+        "offset": offset,
+        "limit": limit,
+        "class_limit": class_limit
+    })
+
+
 @mcp.tool()
 def search_class_by_name(query: str) -> dict:
     """Search for class names that contain the given query string (case-insensitive)."""
     return invoke_jadx("search_class_by_name", {"query": query})
 
 
+@mcp.tool()
+def search_symbols(pattern: str, syntax: str = "glob", kinds: list[str] = [], ignore_case: bool = False,
+                   offset: int = 0, limit: int = 100, max_hits: int = 10000) -> dict:
+    """
+    Searches class, method and field names with a glob or regex pattern, without decompiling.
+    Class names are fully qualified (inner classes joined with '.'); method and field names are simple.
+
+    Params:
+    - pattern: e.g. 'com.bank.*.crypto.*', '*Activity' or '^a\\.b\\.[a-z]$'
+    - syntax: 'glob' (default; '*' matches any text including dots, '?' one character,
+      the whole name must match) or 'regex' (found anywhere in the name unless anchored)
+    - kinds: Any of 'class', 'method', 'field' (default: all)
+    - ignore_case: Case-insensitive matching
+    - offset: Starting index of hit list
+    - limit: Max number of hits to return (default 100, max 1000)
+    - max_hits: Stop counting hits after this many (default 10000); the result is then marked truncated
+    """
+    return invoke_jadx("search_symbols", {
+        "pattern": pattern,
+        "syntax": syntax,
+        "kinds": kinds,
+        "ignore_case": ignore_case,
+        "offset": offset,
+        "limit": limit,
+        "max_hits": max_hits
+    })
+
+
 @mcp.tool()
 def get_class_source(class_name: str) -> str:
     """
@@ -53,6 +295,50 @@ def get_class_source(class_name: str) -> str:
     return invoke_jadx("get_class_source", {"class_name": class_name})
 
 
+@mcp.tool()
+def get_class_sources(class_names: list[str] = [], package: str = "", limit: int = 100, offset: int = 0,
+                      max_bytes: int = 1048576) -> dict:
+    """
+    Returns the decompiled sources of several classes at once, decompiled in parallel.
+
+    Params:
+    - class_names: Fully qualified class names (inner classes resolve to their top-level class)
+    - package: Package prefix, used when class_names is empty; classes are sorted by name
+    - limit: Max number of classes to return (default 100)
+    - offset: Starting index in the class list
+    - max_bytes: Stop after this many bytes of source; continue from the returned next_offset
+    """
+    return invoke_jadx("get_class_sources", {
+        "class_names": class_names,
+        "package": package,
+        "limit": limit,
+        "offset": offset,
+        "max_bytes": max_bytes
+    })
+
+
+@mcp.tool()
+def get_class_outline(class_name: str) -> dict:
+    """
+    Returns the shape of a class without decompiling it: kind, access flags, superclass,
+    interfaces, field types and method signatures. Inner classes are nested.
+    """
+    return invoke_jadx("get_class_outline", {"class_name": class_name})
+
+
+@mcp.tool()
+def get_package_outline(package: str, limit: int = 100, offset: int = 0) -> dict:
+    """
+    Returns the outlines of all top-level classes in a package and its subpackages.
+
+    Params:
+    - package: Package name, e.g. com.example.app
+    - limit: Max number of classes to return (default 100)
+    - offset: Starting index in the class list
+    """
+    return invoke_jadx("get_package_outline", {"package": package, "limit": limit, "offset": offset})
+
+
 @mcp.tool()
 def search_method_by_name(method_name: str) -> str:
     """
@@ -88,6 +374,26 @@ def get_method_code(class_name: str, method_name: str) -> str:
         "method_name": method_name
     })
 
+
+@mcp.tool()
+def get_method_smali(class_name: str, method_name: str) -> dict:
+    """
+    Returns the smali disassembly of all overloads of a method, without decompiling.
+    Use it for methods that fail to decompile or take too long.
+    """
+    return invoke_jadx("get_method_smali", {
+        "class_name": class_name,
+        "method_name": method_name
+    })
+
+
+@mcp.tool()
+def get_class_smali(class_name: str) -> dict:
+    """
+    Returns the smali disassembly of a class, without decompiling.
+    """
+    return invoke_jadx("get_class_smali", {"class_name": class_name})
+
 @mcp.tool()
 def get_android_manifest() -> str:
     """
@@ -146,6 +452,144 @@ def get_field_xrefs(class_name: str, field_name: str) -> dict:
     })
 
 
+@mcp.tool()
+def search_strings(query: str, mode: str = "substring", ignore_case: bool = False,
+                   limit: int = 100, offset: int = 0) -> dict:
+    """
+    Searches string constants (const-string literals and static field values)
+    without decompiling. Returns the owning class and method or field for each hit.
+
+    Params:
+    - query: Text to look for
+    - mode: 'prefix', 'substring' (default) or 'regex'
+    - ignore_case: Case-insensitive matching
+    - limit: Max number of hits to return (default 100)
+    - offset: Starting index of hit list
+    """
+    return invoke_jadx("search_strings", {
+        "query": query,
+        "mode": mode,
+        "ignore_case": ignore_case,
+        "limit": limit,
+        "offset": offset
+    })
+
+
+@mcp.tool()
+def scan_api_usages(signatures: list[str] = [], rule_pack: str = "", include_snippets: bool = False,
+                    limit: int = 100) -> dict:
+    """
+    Finds all callers of the given methods and accessors of the given fields in one pass,
+    grouped per target. Works for framework APIs too (e.g. javax.crypto.Cipher.getInstance).
+
+    Params:
+    - signatures: 'pkg.Class.member', optionally with a raw descriptor,
+      e.g. 'javax.crypto.Cipher.getInstance(Ljava/lang/String;)Ljavax/crypto/Cipher;'.
+      Use '<init>' for constructors and '$' for inner classes.
+    - rule_pack: Built-in set of targets; 'security' covers crypto, WebView, exec,
+      dynamic code loading, storage, IPC and logging APIs
+    - include_snippets: Add the matching source line to each caller (decompiles the callers)
+    - limit: Max number of callers returned per target (default 100)
+    """
+    return invoke_jadx("scan_api_usages", {
+        "signatures": signatures,
+        "rule_pack": rule_pack,
+        "include_snippets": include_snippets,
+        "limit": limit
+    })
+
+
+@mcp.tool()
+def submit_job(tool: str, parameters: dict = {}) -> dict:
+    """
+    Runs any tool in the background and returns a job id right away.
+    Use it for whole-APK tools (e.g. search_method_by_name, scan_api_usages) that may take long.
+    Poll with get_job_status / get_job_result. Submitting the same call again returns the running job.
+    """
+    return invoke_jadx("submit_job", {"tool": tool, "parameters": parameters})
+
+
+@mcp.tool()
+def get_job_status(job_id: str) -> dict:
+    """Returns the state (queued, running, done, failed, cancelled) and progress of a job."""
+    return invoke_jadx("get_job_status", {"job_id": job_id})
+
+
+@mcp.tool()
+def get_job_result(job_id: str, offset: int = 0, limit: int = 100) -> dict:
+    """
+    Returns the result of a finished job. While the job runs, returns the partial results
+    published so far, starting at offset; continue from the returned next_offset.
+    """
+    return invoke_jadx("get_job_result", {"job_id": job_id, "offset": offset, "limit": limit})
+
+
+@mcp.tool()
+def cancel_job(job_id: str) -> dict:
+    """Cancels a queued or running job."""
+    return invoke_jadx("cancel_job", {"job_id": job_id})
+
+
+@mcp.tool()
+def list_jobs() -> dict:
+    """Lists running and recently finished jobs."""
+    return invoke_jadx("list_jobs")
+
+
+@mcp.tool()
+def get_decompile_profile(order: str = "", limit: int = 20, format: str = "json") -> dict:
+    """
+    Reports per-class decompilation cost and request counts, e.g. to pick classes worth warming up.
+
+    Params:
+    - order: 'cost' (total decompile wall time) or 'frequency' (access count); empty returns both
+    - limit: Max number of classes per list (default 20, 0 for all tracked classes)
+    - format: 'json' or 'csv'
+    """
+    return invoke_jadx("get_decompile_profile", {"order": order, "limit": limit, "format": format})
+
+
+@mcp.tool()
+def save_fingerprints(path: str = "") -> dict:
+    """
+    Saves bytecode hashes of every class and method of the loaded APK to a sidecar file,
+    so a later release can be compared against it with diff_against.
+
+    Params:
+    - path: Where to write the file, inside the server's export directory (default: the input
+      file name plus '.fingerprints')
+    """
+    return invoke_jadx("save_fingerprints", {"path": path})
+
+
+@mcp.tool()
+def diff_against(path: str, limit: int = 500) -> dict:
+    """
+    Compares the loaded APK with a fingerprint file saved from another release. Lists added,
+    removed and modified classes, and the added, removed and modified methods of each
+    modified class, so only changed classes need decompiling.
+
+    Params:
+    - path: Fingerprint file written by save_fingerprints for the other release, inside the
+      server's export directory
+    - limit: Max classes listed per category (default 500); counts are always complete
+    """
+    return invoke_jadx("diff_against", {"path": path, "limit": limit})
+
+
+@mcp.tool()
+def export_archive(path: str = "") -> dict:
+    """
+    Decompiles all classes into one compressed, indexed archive file that other processes can
+    read class by class without Jadx. Takes long on large APKs; prefer running it via submit_job.
+
+    Params:
+    - path: Where to write the archive, inside the server's export directory (default: the input
+      file name plus '.jadxsrc'); an existing file is only replaced if it is an archive
+    """
+    return invoke_jadx("export_archive", {"path": path})
+
+
 @mcp.resource("jadx://tools")
 def get_tools_resource() -> dict:
     """
@@ -153,7 +597,7 @@ def get_tools_resource() -> dict:
     Used for dynamic tool discovery.
     """
     try:
-        resp = requests.get(f"{mcp_server}/tools")
+        resp = http_request("GET", "/tools")
         resp.raise_for_status()
         return resp.json()
     except ConnectionError:
@@ -162,5 +606,6 @@ def get_tools_resource() -> dict:
         raise RuntimeError(f"Unexpected error: {str(e)}")
 
 if __name__ == "__main__":
+    threading.Thread(target=watch_invalidations, name="jadx-events", daemon=True).start()
     mcp.run(transport="stdio")
     print("Adapter started", file=sys.stderr)
@@ -0,0 +1,78 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Measures encode throughput and payload size of each {@link ResponseEncoder} on
+ * responses with the exact keys of a {@code list_all_classes} page and a
+ * {@code get_method_xrefs} result, as built by the handlers in {@link McpPlugin}.
+ */
+public final class ResponseEncoderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+
+    private ResponseEncoderBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        List<ResponseEncoder> encoders = List.of(ResponseEncoder.JSON, ResponseEncoder.CBOR, ResponseEncoder.MESSAGE_PACK);
+        run("list_all_classes (2000 classes)", classPage(2000), encoders);
+        run("get_method_xrefs (500 refs)", methodXrefs(500), encoders);
+    }
+
+    private static void run(String label, JSONObject response, List<ResponseEncoder> encoders) {
+        System.out.println(label);
+        for (ResponseEncoder encoder : encoders) {
+            long sink = 0;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                sink += encoder.encode(response).length;
+            }
+            long start = System.nanoTime();
+            int size = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                size = encoder.encode(response).length;
+                sink += size;
+            }
+            double micros = (System.nanoTime() - start) / 1000.0 / MEASURED_ROUNDS;
+            System.out.printf("  %-8s %9d bytes %10.1f us/op %8.1f MB/s  (%d)%n",
+                    encoder.name(), size, micros, size / micros, sink % 10);
+        }
+    }
+
+    /**
+     * Same keys as {@code handleListAllClasses}.
+     */
+    private static JSONObject classPage(int count) {
+        JSONArray classes = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            classes.put("com.example.app.feature" + (i % 40) + ".ui.SomeScreenViewModel." + i);
+        }
+        return new JSONObject()
+                .put("total", count * 5)
+                .put("offset", 0)
+                .put("limit", count)
+                .put("classes", classes);
+    }
+
+    /**
+     * Same keys as {@code handleGetMethodXrefs}; callers are methods, as {@code JavaMethod} nodes.
+     */
+    private static JSONObject methodXrefs(int count) {
+        JSONArray xrefs = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            String name = "load" + i;
+            xrefs.put(new JSONObject()
+                    .put("name", name)
+                    .put("full_name", "com.example.app.data.Repository" + (i % 25) + "." + name)
+                    .put("type", "JavaMethod"));
+        }
+        return new JSONObject()
+                .put("class_name", "com.example.app.net.ApiClient")
+                .put("method_name", "request")
+                .put("xrefs", xrefs);
+    }
+}
@@ -0,0 +1,140 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, prioritized admission of requests to the worker pool.
+ *
+ * <p>At most {@code maxQueued} requests wait for a worker; further requests are rejected
+ * right away so the client can back off instead of timing out on work that was queued
+ * but never ran. Requests that still waited longer than {@code maxQueueMillis} are shed
+ * when they reach a worker. Interactive requests are always dequeued before bulk ones.</p>
+ */
+public final class AdmissionController {
+
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    /**
+     * Work handed to the controller. Exactly one of the methods is called.
+     */
+    public interface Task {
+        void run();
+
+        /**
+         * Called instead of {@link #run()} when the task waited too long in the queue.
+         */
+        void shed(int retryAfterSeconds);
+    }
+
+    private final int threads;
+    private final int maxQueued;
+    private final long maxQueueMillis;
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+    private volatile double avgServiceMillis = 50;
+
+    public AdmissionController(int threads, int maxQueued, long maxQueueMillis) {
+        this.threads = Math.max(1, threads);
+        this.maxQueued = Math.max(1, maxQueued);
+        this.maxQueueMillis = maxQueueMillis;
+        this.workers = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "mcp-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queues a task, or returns {@code false} if the queue is full.
+     */
+    public boolean submit(Priority priority, Task task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        admitted.incrementAndGet();
+        workers.execute(new QueuedTask(priority, sequence.getAndIncrement(), task));
+        return true;
+    }
+
+    /**
+     * Suggested client back-off in seconds, based on queue length and recent service times.
+     */
+    public int estimateRetryAfterSeconds() {
+        double drainMillis = queued.get() * avgServiceMillis / threads;
+        return (int) Math.max(1, Math.min(30, Math.ceil(drainMillis / 1000)));
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public JSONObject toJson() {
+        long started = admitted.get() - queued.get();
+        return new JSONObject()
+                .put("threads", threads)
+                .put("max_queued", maxQueued)
+                .put("max_queue_ms", maxQueueMillis)
+                .put("queued", queued.get())
+                .put("admitted", admitted.get())
+                .put("rejected", rejected.get())
+                .put("shed", shed.get())
+                .put("avg_queue_ms", started > 0 ? totalQueueMillis.get() / started : 0)
+                .put("avg_service_ms", Math.round(avgServiceMillis));
+    }
+
+    private final class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        private final Priority priority;
+        private final long seq;
+        private final Task task;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        QueuedTask(Priority priority, long seq, Task task) {
+            this.priority = priority;
+            this.seq = seq;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            queued.decrementAndGet();
+            long start = System.currentTimeMillis();
+            long waitedMillis = start - enqueuedAt;
+            totalQueueMillis.addAndGet(waitedMillis);
+            if (waitedMillis > maxQueueMillis) {
+                shed.incrementAndGet();
+                task.shed(estimateRetryAfterSeconds());
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                long serviceMillis = System.currentTimeMillis() - start;
+                avgServiceMillis = avgServiceMillis * 0.9 + serviceMillis * 0.1;
+            }
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            int cmp = priority.compareTo(other.priority);
+            return cmp != 0 ? cmp : Long.compare(seq, other.seq);
+        }
+    }
+}
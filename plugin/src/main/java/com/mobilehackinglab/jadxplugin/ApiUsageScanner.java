@@ -0,0 +1,310 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.InsnIndexType;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds every call site of a set of methods and every access to a set of fields in a
+ * single parallel pass over the bytecode of all loaded classes.
+ *
+ * <p>Jadx usage data only covers classes defined in the input, not framework APIs such as
+ * {@code javax.crypto.Cipher}, so the scanner matches method and field references of
+ * {@code invoke-*}, {@code iget/iput} and {@code sget/sput} instructions instead. A reference
+ * through an app class (e.g. {@code MainActivity.getSharedPreferences}) also matches targets
+ * declared on its superclasses.</p>
+ */
+public final class ApiUsageScanner {
+
+    /**
+     * A method or field to look for.
+     *
+     * @param signature  the signature as given, e.g. {@code javax.crypto.Cipher.getInstance}
+     * @param className  declaring class, with {@code $} for inner classes
+     * @param name       member name, {@code <init>} for constructors
+     * @param descriptor raw descriptor ({@code (args)ret} for methods, type for fields), or {@code null} for any
+     * @param rule       id of the rule the target belongs to, or {@code null} for ad-hoc targets
+     */
+    public record Target(String signature, String className, String name, String descriptor, String rule) {
+    }
+
+    /**
+     * A rule of the built-in rule pack: a named group of related targets.
+     */
+    public record Rule(String id, String description, List<String> signatures) {
+    }
+
+    /**
+     * A method that references a target {@code count} times.
+     */
+    public record Caller(ClassNode cls, String methodShortId, int count) {
+    }
+
+    /**
+     * All callers of one target, in class order.
+     */
+    public record Usages(Target target, List<Caller> callers, int total) {
+    }
+
+    public static final Map<String, List<Rule>> RULE_PACKS = Map.of("security", List.of(
+            new Rule("cipher", "Cipher transformations; look for ECB mode, DES or hardcoded keys",
+                    List.of("javax.crypto.Cipher.getInstance")),
+            new Rule("key-material", "Keys and IVs built from raw bytes, often hardcoded",
+                    List.of("javax.crypto.spec.SecretKeySpec.<init>", "javax.crypto.spec.IvParameterSpec.<init>")),
+            new Rule("message-digest", "Hash algorithms; look for MD5 and SHA-1",
+                    List.of("java.security.MessageDigest.getInstance")),
+            new Rule("insecure-random", "java.util.Random is not suitable for secrets",
+                    List.of("java.util.Random.<init>")),
+            new Rule("tls-trust", "Custom trust managers and hostname verifiers",
+                    List.of("javax.net.ssl.SSLContext.init",
+                            "javax.net.ssl.HttpsURLConnection.setDefaultHostnameVerifier",
+                            "javax.net.ssl.HttpsURLConnection.setHostnameVerifier",
+                            "javax.net.ssl.HttpsURLConnection.setDefaultSSLSocketFactory")),
+            new Rule("webview-js-interface", "Java objects exposed to JavaScript",
+                    List.of("android.webkit.WebView.addJavascriptInterface")),
+            new Rule("webview-settings", "WebView settings that widen the attack surface",
+                    List.of("android.webkit.WebSettings.setJavaScriptEnabled",
+                            "android.webkit.WebSettings.setAllowFileAccess",
+                            "android.webkit.WebSettings.setAllowFileAccessFromFileURLs",
+                            "android.webkit.WebSettings.setAllowUniversalAccessFromFileURLs")),
+            new Rule("webview-load", "Content loaded into WebViews",
+                    List.of("android.webkit.WebView.loadUrl", "android.webkit.WebView.loadData",
+                            "android.webkit.WebView.loadDataWithBaseURL", "android.webkit.WebView.evaluateJavascript")),
+            new Rule("command-exec", "Shell command execution",
+                    List.of("java.lang.Runtime.exec", "java.lang.ProcessBuilder.<init>")),
+            new Rule("dynamic-code-loading", "Code and native libraries loaded at runtime",
+                    List.of("dalvik.system.DexClassLoader.<init>", "dalvik.system.PathClassLoader.<init>",
+                            "dalvik.system.InMemoryDexClassLoader.<init>",
+                            "java.lang.System.loadLibrary", "java.lang.System.load")),
+            new Rule("reflection", "Reflective class loading and invocation",
+                    List.of("java.lang.Class.forName", "java.lang.reflect.Method.invoke")),
+            new Rule("raw-sql", "SQL built at runtime; check for injection",
+                    List.of("android.database.sqlite.SQLiteDatabase.rawQuery",
+                            "android.database.sqlite.SQLiteDatabase.execSQL")),
+            new Rule("external-storage", "Files on shared external storage",
+                    List.of("android.os.Environment.getExternalStorageDirectory",
+                            "android.content.Context.getExternalFilesDir")),
+            new Rule("shared-preferences", "Data stored in SharedPreferences",
+                    List.of("android.content.Context.getSharedPreferences",
+                            "android.content.SharedPreferences$Editor.putString")),
+            new Rule("broadcasts", "Broadcasts sent and receivers registered at runtime",
+                    List.of("android.content.Context.sendBroadcast", "android.content.Context.registerReceiver")),
+            new Rule("pending-intent", "PendingIntents; check mutability flags",
+                    List.of("android.app.PendingIntent.getActivity", "android.app.PendingIntent.getBroadcast",
+                            "android.app.PendingIntent.getService")),
+            new Rule("logging", "Log output that may leak data",
+                    List.of("android.util.Log.d", "android.util.Log.v", "android.util.Log.i")),
+            new Rule("clipboard", "Data put on the clipboard",
+                    List.of("android.content.ClipboardManager.setPrimaryClip")),
+            new Rule("device-identifiers", "Device identifiers",
+                    List.of("android.telephony.TelephonyManager.getDeviceId",
+                            "android.provider.Settings$Secure.getString"))
+    ));
+
+    /**
+     * Superclasses of common framework classes, which are not part of the input,
+     * so that {@code Context} targets also match calls through activities and services.
+     */
+    private static final Map<String, String> FRAMEWORK_SUPER_CLASSES = Map.of(
+            "android.app.Activity", "android.view.ContextThemeWrapper",
+            "android.view.ContextThemeWrapper", "android.content.ContextWrapper",
+            "android.app.Service", "android.content.ContextWrapper",
+            "android.app.Application", "android.content.ContextWrapper",
+            "android.content.ContextWrapper", "android.content.Context");
+
+    private final RootNode root;
+    /**
+     * Targets by declaring class, then by member name.
+     */
+    private final Map<String, Map<String, List<Target>>> targets = new HashMap<>();
+    private final Map<String, List<String>> hierarchies = new ConcurrentHashMap<>();
+
+    public ApiUsageScanner(RootNode root, List<Target> targets) {
+        this.root = root;
+        for (Target target : targets) {
+            this.targets.computeIfAbsent(target.className(), k -> new HashMap<>())
+                    .computeIfAbsent(target.name(), k -> new ArrayList<>())
+                    .add(target);
+        }
+    }
+
+    /**
+     * Parses {@code pkg.Class.member} with an optional raw descriptor, e.g.
+     * {@code javax.crypto.Cipher.getInstance(Ljava/lang/String;)Ljavax/crypto/Cipher;}.
+     *
+     * @throws IllegalArgumentException if the signature has no class part
+     */
+    public static Target parse(String signature, String rule) {
+        String head = signature.trim();
+        String descriptor = null;
+        int paren = head.indexOf('(');
+        int colon = head.indexOf(':');
+        if (paren > 0) {
+            descriptor = head.substring(paren);
+            head = head.substring(0, paren);
+        } else if (colon > 0) {
+            descriptor = head.substring(colon + 1);
+            head = head.substring(0, colon);
+        }
+        int dot = head.lastIndexOf('.');
+        if (dot <= 0 || dot == head.length() - 1) {
+            throw new IllegalArgumentException("Invalid signature, expected 'pkg.Class.member': " + signature);
+        }
+        return new Target(signature.trim(), head.substring(0, dot), head.substring(dot + 1), descriptor, rule);
+    }
+
+    /**
+     * Returns the targets of all rules in a built-in rule pack.
+     *
+     * @throws IllegalArgumentException if there is no such rule pack
+     */
+    public static List<Target> ruleTargets(String pack) {
+        List<Rule> rules = RULE_PACKS.get(pack);
+        if (rules == null) {
+            throw new IllegalArgumentException("Unknown rule pack: " + pack + " (available: " + RULE_PACKS.keySet() + ")");
+        }
+        List<Target> result = new ArrayList<>();
+        for (Rule rule : rules) {
+            for (String signature : rule.signatures()) {
+                result.add(parse(signature, rule.id()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scans the given classes in parallel. Once the job is cancelled, remaining classes are skipped.
+     *
+     * @return usages for every target, in target order; targets without hits have no callers
+     */
+    public List<Usages> scan(List<ClassNode> classes, List<Target> order, JobManager.JobContext job) {
+        job.setTotal(classes.size());
+        Map<Target, List<Caller>> merged = classes.parallelStream()
+                .filter(cls -> !job.isCancelled())
+                .map(cls -> {
+                    Map<Target, List<Caller>> found = collect(cls);
+                    job.advance();
+                    return found;
+                })
+                .reduce(ApiUsageScanner::merge)
+                .orElseGet(HashMap::new);
+
+        List<Usages> result = new ArrayList<>();
+        for (Target target : order) {
+            List<Caller> callers = merged.getOrDefault(target, List.of());
+            int total = 0;
+            for (Caller caller : callers) {
+                total += caller.count();
+            }
+            result.add(new Usages(target, callers, total));
+        }
+        return result;
+    }
+
+    private Map<Target, List<Caller>> collect(ClassNode cls) {
+        Map<Target, Map<String, Integer>> found = new HashMap<>();
+        BytecodeScanner.scan(cls, new BytecodeScanner.Visitor() {
+            private String currentMethod;
+
+            @Override
+            public void visitMethod(IMethodData method) {
+                currentMethod = BytecodeScanner.shortId(method.getMethodRef());
+            }
+
+            @Override
+            public void visitInsn(IMethodData method, InsnData insn) {
+                InsnIndexType indexType = insn.getIndexType();
+                if (indexType == InsnIndexType.METHOD_REF) {
+                    IMethodRef ref = insn.getIndexAsMethod();
+                    ref.load();
+                    for (Target target : match(ref.getParentClassType(), ref.getName())) {
+                        if (target.descriptor() == null
+                                || BytecodeScanner.shortId(ref).equals(target.name() + target.descriptor())) {
+                            found.computeIfAbsent(target, k -> new LinkedHashMap<>()).merge(currentMethod, 1, Integer::sum);
+                        }
+                    }
+                } else if (indexType == InsnIndexType.FIELD_REF) {
+                    IFieldRef ref = insn.getIndexAsField();
+                    for (Target target : match(ref.getParentClassType(), ref.getName())) {
+                        if (target.descriptor() == null || ref.getType().equals(target.descriptor())) {
+                            found.computeIfAbsent(target, k -> new LinkedHashMap<>()).merge(currentMethod, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        });
+
+        Map<Target, List<Caller>> callers = new HashMap<>();
+        found.forEach((target, methods) -> {
+            List<Caller> list = new ArrayList<>();
+            methods.forEach((shortId, count) -> list.add(new Caller(cls, shortId, count)));
+            callers.put(target, list);
+        });
+        return callers;
+    }
+
+    /**
+     * Returns the targets named {@code name} declared on the referenced class or one of its superclasses.
+     */
+    private List<Target> match(String classType, String name) {
+        if (classType == null || !classType.startsWith("L")) {
+            // array types, e.g. clone() on an array
+            return List.of();
+        }
+        List<Target> result = null;
+        for (String className : hierarchy(classType)) {
+            Map<String, List<Target>> byName = targets.get(className);
+            List<Target> list = byName != null ? byName.get(name) : null;
+            if (list != null) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.addAll(list);
+            }
+        }
+        return result != null ? result : List.of();
+    }
+
+    private List<String> hierarchy(String classType) {
+        return hierarchies.computeIfAbsent(classType, type -> {
+            List<String> chain = new ArrayList<>();
+            String name = type.substring(1, type.length() - 1).replace('/', '.');
+            while (name != null && !chain.contains(name)) {
+                chain.add(name);
+                ClassNode cls = root.resolveClass(ArgType.object(name));
+                if (cls != null) {
+                    ArgType superClass = cls.getSuperClass();
+                    name = superClass != null ? superClass.getObject() : null;
+                } else {
+                    name = FRAMEWORK_SUPER_CLASSES.get(name);
+                }
+            }
+            return chain;
+        });
+    }
+
+    /**
+     * Appends the callers of {@code b} after those of {@code a}, keeping class order.
+     */
+    private static Map<Target, List<Caller>> merge(Map<Target, List<Caller>> a, Map<Target, List<Caller>> b) {
+        b.forEach((k, v) -> a.merge(k, v, (x, y) -> {
+            List<Caller> list = new ArrayList<>(x.size() + y.size());
+            list.addAll(x);
+            list.addAll(y);
+            return list;
+        }));
+        return a;
+    }
+}
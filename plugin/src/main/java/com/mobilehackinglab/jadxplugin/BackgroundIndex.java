@@ -0,0 +1,233 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JadxDecompiler;
+import org.json.JSONObject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An index over the loaded APK that is built asynchronously and reports its progress.
+ *
+ * <p>The index belongs to the decompiler instance it was built from. When Jadx replaces
+ * the decompiler (e.g. "File → Open"), the next {@link #get} call starts a rebuild and
+ * the stale value is never returned.</p>
+ *
+ * @param <T> type of the built index
+ */
+public final class BackgroundIndex<T> {
+
+    public enum State {
+        PENDING, BUILDING, READY, FAILED
+    }
+
+    /**
+     * Receives build progress, counted in arbitrary work units (usually classes).
+     */
+    public interface Progress {
+        void setTotal(int total);
+
+        void advance();
+    }
+
+    /**
+     * Implemented by index types that can tell how much heap they retain, to be reported
+     * with the build status.
+     */
+    public interface Sized {
+        /**
+         * Number of entries in the index, in whatever unit it indexes.
+         */
+        int size();
+
+        /**
+         * Estimated bytes retained by the index, not counting objects shared with Jadx.
+         */
+        long retainedBytes();
+    }
+
+    public interface Builder<T> {
+        T build(JadxDecompiler decompiler, Progress progress) throws Exception;
+    }
+
+    private final String name;
+    private final Builder<T> builder;
+    private final ExecutorService executor;
+
+    private JadxDecompiler owner;
+    private volatile T value;
+    // last value built for previousOwner, served by getLatest while a refresh rebuilds it
+    private JadxDecompiler previousOwner;
+    private T previous;
+    private volatile State state = State.PENDING;
+    private volatile String error;
+    private volatile int total;
+    private final AtomicInteger done = new AtomicInteger();
+    private volatile long startedAt;
+    private volatile long buildMillis;
+    private int generation;
+
+    public BackgroundIndex(String name, ExecutorService executor, Builder<T> builder) {
+        this.name = name;
+        this.executor = executor;
+        this.builder = builder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the index if it is ready for the given decompiler, otherwise makes sure
+     * a build is running and returns {@code null}.
+     */
+    public T get(JadxDecompiler decompiler) {
+        synchronized (this) {
+            if (owner == decompiler && state == State.READY) {
+                return value;
+            }
+        }
+        start(decompiler);
+        return null;
+    }
+
+    /**
+     * Like {@link #get}, but while a {@link #refresh} is rebuilding the index, returns the
+     * value from before the refresh instead of {@code null}.
+     */
+    public T getLatest(JadxDecompiler decompiler) {
+        T current = get(decompiler);
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            return previousOwner == decompiler ? previous : null;
+        }
+    }
+
+    /**
+     * Starts building the index for the given decompiler unless that build is already
+     * running or done. A failed build is retried.
+     */
+    public synchronized void start(JadxDecompiler decompiler) {
+        if (owner == decompiler && (state == State.BUILDING || state == State.READY)) {
+            return;
+        }
+        int gen = ++generation;
+        owner = decompiler;
+        value = null;
+        error = null;
+        total = 0;
+        done.set(0);
+        state = State.BUILDING;
+        startedAt = System.currentTimeMillis();
+        executor.execute(() -> runBuild(decompiler, gen));
+    }
+
+    private void runBuild(JadxDecompiler decompiler, int gen) {
+        Progress progress = new Progress() {
+            @Override
+            public void setTotal(int count) {
+                total = count;
+            }
+
+            @Override
+            public void advance() {
+                done.incrementAndGet();
+            }
+        };
+        try {
+            T result = builder.build(decompiler, progress);
+            synchronized (this) {
+                if (gen == generation) {
+                    value = result;
+                    previous = null;
+                    previousOwner = null;
+                    buildMillis = System.currentTimeMillis() - startedAt;
+                    state = State.READY;
+                    System.out.println("[MCP] Index '" + name + "' ready in " + buildMillis + " ms");
+                }
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                if (gen == generation) {
+                    error = e.getMessage();
+                    state = State.FAILED;
+                }
+            }
+            System.err.println("[MCP] Failed to build index '" + name + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the built index, e.g. because names in it changed. The next {@link #get} call
+     * starts a rebuild, and a build that is still running is discarded.
+     */
+    public synchronized void invalidate() {
+        previous = null;
+        previousOwner = null;
+        generation++;
+        owner = null;
+        value = null;
+        error = null;
+        total = 0;
+        done.set(0);
+        state = State.PENDING;
+    }
+
+    /**
+     * Rebuilds the index, e.g. after a few names changed, while {@link #getLatest} keeps
+     * serving the current value until the new one is ready.
+     */
+    public synchronized void refresh(JadxDecompiler decompiler) {
+        JadxDecompiler builtFor = owner;
+        T built = state == State.READY ? value : previous;
+        invalidate();
+        if (built != null && builtFor == decompiler) {
+            previous = built;
+            previousOwner = decompiler;
+        }
+        start(decompiler);
+    }
+
+    /**
+     * Suggested client back-off in seconds, extrapolated from the build progress so far.
+     */
+    public int estimateRetryAfterSeconds() {
+        int finished = done.get();
+        int all = total;
+        if (state != State.BUILDING || finished == 0 || all <= finished) {
+            return 1;
+        }
+        long elapsed = System.currentTimeMillis() - startedAt;
+        long remaining = elapsed * (all - finished) / finished;
+        return (int) Math.max(1, Math.min(60, (remaining + 999) / 1000));
+    }
+
+    /**
+     * Returns the build status as JSON for the readiness endpoint.
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject()
+                .put("state", state.name().toLowerCase())
+                .put("done", done.get())
+                .put("total", total);
+        if (state == State.READY) {
+            json.put("build_ms", buildMillis);
+            if (value instanceof Sized sized) {
+                json.put("entries", sized.size())
+                        .put("retained_bytes", sized.retainedBytes())
+                        .put("bytes_per_entry", sized.size() > 0
+                                ? Math.round(10.0 * sized.retainedBytes() / sized.size()) / 10.0 : 0);
+            }
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.IFieldData;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.core.dex.nodes.ClassNode;
+
+/**
+ * Walks the raw dex data Jadx keeps for every loaded class.
+ *
+ * <p>Nothing here triggers decompilation, so the cost of a scan depends only on
+ * the size of the input, not on how many classes have already been decompiled.</p>
+ */
+public final class BytecodeScanner {
+
+    public interface Visitor {
+        /**
+         * Called for every field declared in the class.
+         */
+        default void visitField(IFieldData field) {
+        }
+
+        /**
+         * Called once per method before its instructions are visited.
+         */
+        default void visitMethod(IMethodData method) {
+        }
+
+        /**
+         * Called for every decoded instruction of a method.
+         */
+        default void visitInsn(IMethodData method, InsnData insn) {
+        }
+    }
+
+    private BytecodeScanner() {
+    }
+
+    /**
+     * Visits fields, methods and instructions of the given class.
+     *
+     * <p>Works on a copy of the class data, so different threads may scan the
+     * same class concurrently. Classes without input data (synthetic ones) are skipped.</p>
+     */
+    public static void scan(ClassNode cls, Visitor visitor) {
+        IClassData clsData = cls.getClsData();
+        if (clsData == null) {
+            return;
+        }
+        scan(clsData.copy(), visitor);
+    }
+
+    /**
+     * Visits fields, methods and instructions of class data the caller has already copied
+     * with {@link IClassData#copy()} and does not share with other threads.
+     */
+    public static void scan(IClassData copy, Visitor visitor) {
+        copy.visitFieldsAndMethods(visitor::visitField, method -> {
+            visitor.visitMethod(method);
+            ICodeReader codeReader = method.getCodeReader();
+            if (codeReader != null) {
+                codeReader.visitInstructions(insn -> {
+                    insn.decode();
+                    visitor.visitInsn(method, insn);
+                });
+            }
+        });
+    }
+
+    /**
+     * Builds the Jadx short id ({@code name(args)ret} in raw descriptor form) of a method.
+     */
+    public static String shortId(IMethodRef ref) {
+        ref.load();
+        StringBuilder sb = new StringBuilder();
+        sb.append(ref.getName()).append('(');
+        for (String argType : ref.getArgTypes()) {
+            sb.append(argType);
+        }
+        return sb.append(')').append(ref.getReturnType()).toString();
+    }
+}
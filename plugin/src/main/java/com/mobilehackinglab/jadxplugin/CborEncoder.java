@@ -0,0 +1,99 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes responses as CBOR (RFC 8949) with definite-length items.
+ * Integers use the shortest encoding, other numbers are 64-bit floats.
+ */
+public final class CborEncoder implements ResponseEncoder {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+
+    @Override
+    public String name() {
+        return "cbor";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/cbor";
+    }
+
+    @Override
+    public byte[] encode(JSONObject json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        write(out, json);
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object raw) {
+        Object value = ResponseEncoder.normalize(raw);
+        if (value == null) {
+            out.write(0xf6);
+        } else if (value instanceof Boolean b) {
+            out.write(b ? 0xf5 : 0xf4);
+        } else if (value instanceof Long l) {
+            if (l >= 0) {
+                writeHead(out, MAJOR_UNSIGNED, l);
+            } else {
+                writeHead(out, MAJOR_NEGATIVE, -1 - l);
+            }
+        } else if (value instanceof Double d) {
+            out.write(0xfb);
+            writeBigEndian(out, Double.doubleToLongBits(d), 8);
+        } else if (value instanceof String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeHead(out, MAJOR_TEXT, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value instanceof JSONArray array) {
+            writeHead(out, MAJOR_ARRAY, array.length());
+            for (int i = 0; i < array.length(); i++) {
+                write(out, array.opt(i));
+            }
+        } else {
+            JSONObject obj = (JSONObject) value;
+            writeHead(out, MAJOR_MAP, obj.length());
+            for (String key : obj.keySet()) {
+                write(out, key);
+                write(out, obj.opt(key));
+            }
+        }
+    }
+
+    /**
+     * Writes the initial byte of an item and its argument in the shortest form.
+     */
+    private static void writeHead(ByteArrayOutputStream out, int major, long argument) {
+        int type = major << 5;
+        if (argument < 24) {
+            out.write(type | (int) argument);
+        } else if (argument <= 0xffL) {
+            out.write(type | 24);
+            out.write((int) argument);
+        } else if (argument <= 0xffffL) {
+            out.write(type | 25);
+            writeBigEndian(out, argument, 2);
+        } else if (argument <= 0xffffffffL) {
+            out.write(type | 26);
+            writeBigEndian(out, argument, 4);
+        } else {
+            out.write(type | 27);
+            writeBigEndian(out, argument, 8);
+        }
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream out, long value, int bytes) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mobilehackinglab.jadxplugin;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an HTTP/1.1 body with {@code Transfer-Encoding: chunked}, one chunk per write.
+ * {@link #finish()} writes the terminating chunk but leaves the socket stream open.
+ */
+public final class ChunkedOutputStream extends FilterOutputStream {
+
+    public ChunkedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            // an empty chunk would end the body
+            return;
+        }
+        out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(b, off, len);
+        out.write('\r');
+        out.write('\n');
+        out.flush();
+    }
+
+    public void finish() throws IOException {
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
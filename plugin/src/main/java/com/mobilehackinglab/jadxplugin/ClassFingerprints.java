@@ -0,0 +1,415 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.plugins.input.data.ICatch;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.IFieldData;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.data.ITry;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.custom.IArrayPayload;
+import jadx.api.plugins.input.insns.custom.ICustomPayload;
+import jadx.api.plugins.input.insns.custom.ISwitchPayload;
+import jadx.core.dex.nodes.ClassNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content hashes of every class and method, computed from the dex bytecode, for
+ * comparing two releases of an app without decompiling them.
+ *
+ * <p>A method hash covers its access flags, try/catch blocks and instructions with their
+ * references resolved to names (strings, types, fields, methods), so it does not depend on
+ * dex index order or debug info. A class hash covers its header, its fields and the hashes
+ * of its methods. Classes are kept sorted by raw name, so two sets compare in one merge
+ * pass. Fingerprints can be saved to and loaded from a small gzip-compressed sidecar file.</p>
+ */
+public final class ClassFingerprints implements BackgroundIndex.Sized {
+
+    private static final int FILE_MAGIC = 0x4A465031; // "JFP1"
+    // deflate cannot expand data by more than this, which bounds the uncompressed file size
+    private static final long MAX_DEFLATE_RATIO = 1032;
+    // smallest encodings: name length, class hash and method count; method id length and hash
+    private static final int MIN_ENTRY_BYTES = 2 + 8 + 4;
+    private static final int MIN_METHOD_BYTES = 2 + 8;
+
+    /**
+     * Fingerprint of one class: its hash, and its methods' short ids and hashes sorted by id.
+     */
+    private record Entry(String name, long hash, String[] methodIds, long[] methodHashes) {
+    }
+
+    private final Entry[] entries;
+
+    private final long retainedBytes;
+
+    private ClassFingerprints(Entry[] entries) {
+        this.entries = entries;
+        this.retainedBytes = measure(entries);
+    }
+
+    private static long measure(Entry[] entries) {
+        long bytes = HeapSize.array(entries.length, HeapSize.REFERENCE);
+        for (Entry entry : entries) {
+            // the class name is shared with Jadx unless the entry was loaded from a file
+            bytes += HeapSize.object(3 * HeapSize.REFERENCE + 8)
+                    + HeapSize.array(entry.methodIds().length, HeapSize.REFERENCE)
+                    + HeapSize.array(entry.methodHashes().length, 8);
+            for (String id : entry.methodIds()) {
+                bytes += HeapSize.string(id);
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public int size() {
+        return entries.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Hashes all classes in parallel.
+     */
+    public static ClassFingerprints build(List<ClassNode> classes, BackgroundIndex.Progress progress) {
+        progress.setTotal(classes.size());
+        Entry[] entries = classes.parallelStream()
+                .map(cls -> {
+                    Entry entry = fingerprint(cls);
+                    progress.advance();
+                    return entry;
+                })
+                .filter(entry -> entry != null)
+                .sorted(Comparator.comparing(Entry::name))
+                .toArray(Entry[]::new);
+        return new ClassFingerprints(entries);
+    }
+
+    private static Entry fingerprint(ClassNode cls) {
+        IClassData clsData = cls.getClsData();
+        if (clsData == null) {
+            return null;
+        }
+        // reads move the position of the shared class data, so work on a private copy
+        IClassData data = clsData.copy();
+        Hasher header = new Hasher()
+                .add(data.getAccessFlags())
+                .add(data.getSuperType());
+        for (String iface : data.getInterfacesTypes()) {
+            header.add(iface);
+        }
+
+        List<String> ids = new ArrayList<>();
+        List<Hasher> methods = new ArrayList<>();
+        BytecodeScanner.scan(data, new BytecodeScanner.Visitor() {
+            private Hasher current;
+
+            @Override
+            public void visitField(IFieldData field) {
+                header.add(field.getName()).add(field.getType()).add(field.getAccessFlags());
+            }
+
+            @Override
+            public void visitMethod(IMethodData method) {
+                current = new Hasher().add(method.getAccessFlags());
+                ids.add(BytecodeScanner.shortId(method.getMethodRef()));
+                methods.add(current);
+                ICodeReader codeReader = method.getCodeReader();
+                if (codeReader != null) {
+                    addTries(current, codeReader.getTries());
+                }
+            }
+
+            @Override
+            public void visitInsn(IMethodData method, InsnData insn) {
+                addInsn(current, insn);
+            }
+        });
+
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(ids::get));
+        String[] methodIds = new String[order.length];
+        long[] methodHashes = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            methodIds[i] = ids.get(order[i]);
+            methodHashes[i] = methods.get(order[i]).value();
+            header.add(methodIds[i]).add(methodHashes[i]);
+        }
+        return new Entry(cls.getRawName(), header.value(), methodIds, methodHashes);
+    }
+
+    private static void addTries(Hasher hasher, List<ITry> tries) {
+        for (ITry tryData : tries) {
+            hasher.add(tryData.getStartOffset()).add(tryData.getEndOffset());
+            ICatch handler = tryData.getCatch();
+            for (String type : handler.getTypes()) {
+                hasher.add(type);
+            }
+            for (int target : handler.getHandlers()) {
+                hasher.add(target);
+            }
+            hasher.add(handler.getCatchAllHandler());
+        }
+    }
+
+    private static void addInsn(Hasher hasher, InsnData insn) {
+        hasher.add(String.valueOf(insn.getOpcode()));
+        int regs = insn.getRegsCount();
+        for (int i = 0; i < regs; i++) {
+            hasher.add(insn.getReg(i));
+        }
+        hasher.add(insn.getResultReg()).add(insn.getLiteral()).add(insn.getTarget());
+        switch (insn.getIndexType()) {
+            case STRING_REF -> hasher.add(insn.getIndexAsString());
+            case TYPE_REF -> hasher.add(insn.getIndexAsType());
+            case FIELD_REF -> {
+                IFieldRef field = insn.getIndexAsField();
+                hasher.add(field.getParentClassType()).add(field.getName()).add(field.getType());
+            }
+            case METHOD_REF -> {
+                IMethodRef method = insn.getIndexAsMethod();
+                method.load();
+                hasher.add(method.getParentClassType()).add(BytecodeScanner.shortId(method));
+            }
+            case CALL_SITE -> hasher.add("call-site");
+            default -> {
+            }
+        }
+        ICustomPayload payload = insn.getPayload();
+        if (payload instanceof ISwitchPayload switchPayload) {
+            hasher.add(Arrays.hashCode(switchPayload.getKeys())).add(Arrays.hashCode(switchPayload.getTargets()));
+        } else if (payload instanceof IArrayPayload arrayPayload) {
+            hasher.add(arrayPayload.getElementSize()).add(arrayDataHash(arrayPayload.getData()));
+        }
+    }
+
+    private static int arrayDataHash(Object data) {
+        if (data instanceof byte[] a) {
+            return Arrays.hashCode(a);
+        } else if (data instanceof short[] a) {
+            return Arrays.hashCode(a);
+        } else if (data instanceof int[] a) {
+            return Arrays.hashCode(a);
+        } else if (data instanceof long[] a) {
+            return Arrays.hashCode(a);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the fingerprints to a sidecar file. An existing file is only replaced if it is
+     * a fingerprint file too.
+     *
+     * @return the size of the written file in bytes
+     */
+    public long save(Path path) throws IOException {
+        if (Files.exists(path) && !isFingerprintFile(path)) {
+            throw new IOException("Refusing to overwrite " + path + ", which is not a fingerprint file");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(path))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(entries.length);
+            for (Entry entry : entries) {
+                out.writeUTF(entry.name());
+                out.writeLong(entry.hash());
+                out.writeInt(entry.methodIds().length);
+                for (int i = 0; i < entry.methodIds().length; i++) {
+                    out.writeUTF(entry.methodIds()[i]);
+                    out.writeLong(entry.methodHashes()[i]);
+                }
+            }
+        }
+        return Files.size(path);
+    }
+
+    private static boolean isFingerprintFile(Path path) {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(path)))) {
+            return in.readInt() == FILE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads fingerprints written by {@link #save}.
+     *
+     * <p>The counts in the file are checked against how much data the file can hold before
+     * anything is allocated for them, so a corrupt or crafted file cannot exhaust the heap.</p>
+     *
+     * @throws IOException if the file cannot be read or is not a fingerprint file
+     */
+    public static ClassFingerprints load(Path path) throws IOException {
+        long maxBytes = Files.size(path) * MAX_DEFLATE_RATIO;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a fingerprint file: " + path);
+            }
+            Entry[] entries = new Entry[readCount(in, MIN_ENTRY_BYTES, maxBytes, path)];
+            for (int i = 0; i < entries.length; i++) {
+                String name = in.readUTF();
+                long hash = in.readLong();
+                String[] methodIds = new String[readCount(in, MIN_METHOD_BYTES, maxBytes, path)];
+                long[] methodHashes = new long[methodIds.length];
+                for (int j = 0; j < methodIds.length; j++) {
+                    methodIds[j] = in.readUTF();
+                    methodHashes[j] = in.readLong();
+                }
+                entries[i] = new Entry(name, hash, methodIds, methodHashes);
+            }
+            return new ClassFingerprints(entries);
+        }
+    }
+
+    /**
+     * Reads an item count and checks that that many items of at least {@code minItemBytes}
+     * each fit in {@code maxBytes} of uncompressed data.
+     */
+    private static int readCount(DataInputStream in, int minItemBytes, long maxBytes, Path path) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * minItemBytes > maxBytes) {
+            throw new IOException("Corrupt fingerprint file: " + path);
+        }
+        return count;
+    }
+
+    /**
+     * Compares these fingerprints (the current release) with an older set and lists
+     * added, removed and modified classes, with the changed methods of modified ones.
+     *
+     * @param limit max classes listed per category; counts are always complete
+     */
+    public JSONObject diff(ClassFingerprints previous, int limit) {
+        JSONArray added = new JSONArray();
+        JSONArray removed = new JSONArray();
+        JSONArray modified = new JSONArray();
+        int addedCount = 0;
+        int removedCount = 0;
+        int modifiedCount = 0;
+        int unchanged = 0;
+
+        Entry[] old = previous.entries;
+        int i = 0;
+        int j = 0;
+        while (i < entries.length || j < old.length) {
+            int cmp = i == entries.length ? 1 : j == old.length ? -1 : entries[i].name().compareTo(old[j].name());
+            if (cmp < 0) {
+                if (addedCount++ < limit) {
+                    added.put(entries[i].name());
+                }
+                i++;
+            } else if (cmp > 0) {
+                if (removedCount++ < limit) {
+                    removed.put(old[j].name());
+                }
+                j++;
+            } else {
+                if (entries[i].hash() == old[j].hash()) {
+                    unchanged++;
+                } else if (modifiedCount++ < limit) {
+                    modified.put(methodDiff(entries[i], old[j]));
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return new JSONObject()
+                .put("classes", entries.length)
+                .put("previous_classes", old.length)
+                .put("unchanged", unchanged)
+                .put("added_count", addedCount)
+                .put("removed_count", removedCount)
+                .put("modified_count", modifiedCount)
+                .put("limit", limit)
+                .put("added", added)
+                .put("removed", removed)
+                .put("modified", modified);
+    }
+
+    private static JSONObject methodDiff(Entry current, Entry previous) {
+        JSONArray added = new JSONArray();
+        JSONArray removed = new JSONArray();
+        JSONArray modified = new JSONArray();
+        String[] ids = current.methodIds();
+        String[] oldIds = previous.methodIds();
+        int i = 0;
+        int j = 0;
+        while (i < ids.length || j < oldIds.length) {
+            int cmp = i == ids.length ? 1 : j == oldIds.length ? -1 : ids[i].compareTo(oldIds[j]);
+            if (cmp < 0) {
+                added.put(ids[i++]);
+            } else if (cmp > 0) {
+                removed.put(oldIds[j++]);
+            } else {
+                if (current.methodHashes()[i] != previous.methodHashes()[j]) {
+                    modified.put(ids[i]);
+                }
+                i++;
+                j++;
+            }
+        }
+        return new JSONObject()
+                .put("class", current.name())
+                .put("methods_added", added)
+                .put("methods_removed", removed)
+                .put("methods_modified", modified);
+    }
+
+    /**
+     * 64-bit FNV-1a over the values fed to it, each followed by a separator.
+     */
+    private static final class Hasher {
+        private long hash = 0xcbf29ce484222325L;
+
+        Hasher add(String value) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    mix(value.charAt(i));
+                }
+            }
+            mix(0xffff);
+            return this;
+        }
+
+        Hasher add(long value) {
+            for (int shift = 0; shift < 64; shift += 16) {
+                mix((int) (value >>> shift) & 0xffff);
+            }
+            return this;
+        }
+
+        long value() {
+            return hash;
+        }
+
+        private void mix(int unit) {
+            hash ^= unit;
+            hash *= 0x100000001b3L;
+        }
+    }
+}
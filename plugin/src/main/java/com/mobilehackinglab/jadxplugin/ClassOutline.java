@@ -0,0 +1,97 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.core.dex.info.AccessInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Describes the shape of a class (supertypes, field types, method signatures and access
+ * flags) from the metadata Jadx reads when it loads the input.
+ *
+ * <p>Works on {@link ClassNode} instead of {@code JavaClass}, whose member accessors load
+ * the class first, so an outline never triggers decompilation.</p>
+ */
+public final class ClassOutline {
+
+    private ClassOutline() {
+    }
+
+    /**
+     * Builds the outline of a class, with the outlines of its inner classes nested.
+     */
+    public static JSONObject of(ClassNode cls) {
+        AccessInfo access = cls.getAccessFlags();
+        JSONObject json = new JSONObject()
+                .put("class_name", cls.getFullName())
+                .put("kind", kind(access))
+                .put("access", modifiers(access));
+
+        ArgType superClass = cls.getSuperClass();
+        if (superClass != null && !superClass.equals(ArgType.OBJECT)) {
+            json.put("super_class", superClass.toString());
+        }
+        JSONArray interfaces = new JSONArray();
+        for (ArgType type : cls.getInterfaces()) {
+            interfaces.put(type.toString());
+        }
+        json.put("interfaces", interfaces);
+
+        JSONArray fields = new JSONArray();
+        for (FieldNode field : cls.getFields()) {
+            fields.put(new JSONObject()
+                    .put("name", field.getAlias())
+                    .put("type", field.getType().toString())
+                    .put("access", modifiers(field.getAccessFlags())));
+        }
+        json.put("fields", fields);
+
+        JSONArray methods = new JSONArray();
+        for (MethodNode method : cls.getMethods()) {
+            JSONArray argTypes = new JSONArray();
+            for (ArgType type : method.getArgTypes()) {
+                argTypes.put(type.toString());
+            }
+            JSONObject entry = new JSONObject()
+                    .put("name", method.getAlias())
+                    .put("access", modifiers(method.getAccessFlags()))
+                    .put("return_type", method.getReturnType().toString())
+                    .put("arg_types", argTypes)
+                    .put("short_id", method.getMethodInfo().getShortId());
+            if (method.isConstructor()) {
+                entry.put("constructor", true);
+            }
+            methods.put(entry);
+        }
+        json.put("methods", methods);
+
+        JSONArray inner = new JSONArray();
+        for (ClassNode innerCls : cls.getInnerClasses()) {
+            inner.put(of(innerCls));
+        }
+        if (!inner.isEmpty()) {
+            json.put("inner_classes", inner);
+        }
+        return json;
+    }
+
+    private static String kind(AccessInfo access) {
+        if (access.isAnnotation()) {
+            return "annotation";
+        }
+        if (access.isInterface()) {
+            return "interface";
+        }
+        if (access.isEnum()) {
+            return "enum";
+        }
+        return "class";
+    }
+
+    private static String modifiers(AccessInfo access) {
+        return access.makeString(true).trim();
+    }
+}
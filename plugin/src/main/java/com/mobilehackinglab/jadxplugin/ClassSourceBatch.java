@@ -0,0 +1,110 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JavaClass;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Decompiles a list of classes in parallel and hands their sources out in list order.
+ *
+ * <p>Classes are submitted to the {@link DecompileCoordinator} ahead of the one being
+ * emitted, but a batch never has more classes queued or decompiling than the coordinator
+ * has threads. That keeps all decompile threads busy while results still come out in a
+ * stable order, leaves room in the shared queue for other clients, and starts no work for
+ * classes beyond the byte cap.</p>
+ */
+public final class ClassSourceBatch {
+
+    private final DecompileCoordinator coordinator;
+    private final List<JavaClass> classes;
+    private final int offset;
+    private final int total;
+    private final long maxBytes;
+
+    /**
+     * @param classes  classes to decompile, in output order
+     * @param offset   position of the first class in the caller's full list, used for {@code next_offset}
+     * @param total    size of the caller's full list
+     * @param maxBytes cap on the total UTF-8 size of returned sources; the first class is always returned
+     */
+    public ClassSourceBatch(DecompileCoordinator coordinator, List<JavaClass> classes, int offset, int total, long maxBytes) {
+        this.coordinator = coordinator;
+        this.classes = classes;
+        this.offset = offset;
+        this.total = total;
+        this.maxBytes = maxBytes;
+    }
+
+    public int size() {
+        return classes.size();
+    }
+
+    /**
+     * Emits one {@code {class_name, source}} (or {@code {class_name, error}}) object per class
+     * as soon as it and all classes before it are done.
+     *
+     * @return summary with the number of returned classes and bytes, and {@code next_offset} if classes remain
+     */
+    public JSONObject run(Consumer<JSONObject> sink) throws InterruptedException {
+        int count = classes.size();
+        Semaphore permits = new Semaphore(coordinator.getParallelism());
+        List<CompletableFuture<String>> futures = new ArrayList<>(count);
+        int submitted = 0;
+        int returned = 0;
+        long bytes = 0;
+        boolean truncated = false;
+
+        for (int i = 0; i < count; i++) {
+            // the class to emit next is always submitted, waiting for a permit if needed
+            while (submitted < count && (submitted == i || permits.tryAcquire())) {
+                if (submitted == i) {
+                    permits.acquire();
+                }
+                CompletableFuture<String> future = coordinator.submit(classes.get(submitted));
+                future.whenComplete((code, error) -> permits.release());
+                futures.add(future);
+                submitted++;
+            }
+
+            JavaClass cls = classes.get(i);
+            JSONObject entry = new JSONObject().put("class_name", cls.getFullName());
+            try {
+                String code = futures.set(i, null).get();
+                if (code == null) {
+                    entry.put("error", "Error decompiling class: no code produced");
+                } else {
+                    int size = code.getBytes(StandardCharsets.UTF_8).length;
+                    if (returned > 0 && bytes + size > maxBytes) {
+                        truncated = true;
+                        break;
+                    }
+                    bytes += size;
+                    entry.put("source", code);
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                entry.put("error", "Error decompiling class: " + cause.getMessage());
+            }
+            returned++;
+            sink.accept(entry);
+        }
+
+        JSONObject summary = new JSONObject()
+                .put("total", total)
+                .put("offset", offset)
+                .put("returned", returned)
+                .put("bytes", bytes)
+                .put("truncated", truncated);
+        if (truncated || offset + returned < total) {
+            summary.put("next_offset", offset + returned);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,307 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JavaClass;
+import org.json.JSONObject;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs all decompilations triggered by the plugin.
+ *
+ * <p>Concurrent requests for the same class share one in-flight future instead of
+ * decompiling twice or blocking on Jadx-internal locks, and a fixed pool bounds how
+ * many different classes are decompiled at the same time. Classes a client asked for
+ * are taken from the queue before bulk work (batches, scans, exports), and a queued bulk
+ * decompilation is moved ahead when a client asks for the same class. Requests made on
+ * behalf of a client asking for one class, and every actual decompilation (not Jadx
+ * code-cache hits), are recorded in a {@link DecompileProfiler}.</p>
+ *
+ * <p>Bulk work that only needs the source text can let the coordinator unload a class it
+ * decompiled once the source is consumed ({@link #submitUnloadable(JavaClass)}). That
+ * happens only if nothing else asked for the class through the coordinator since the
+ * decompilation was queued, so a tool still working with the class never loses its code.</p>
+ */
+public final class DecompileCoordinator {
+
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private final DecompileProfiler profiler;
+    private final ConcurrentHashMap<JavaClass, Task> inFlight = new ConcurrentHashMap<>();
+    /**
+     * Classes decompiled by an unloadable task that nobody else asked for since; only
+     * changed while holding the class's {@link #inFlight} entry lock.
+     */
+    private final Set<JavaClass> unloadable = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong decompiles = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong promoted = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+    private final AtomicLong unloaded = new AtomicLong();
+    private final AtomicLong decompileNanos = new AtomicLong();
+
+    public DecompileCoordinator(int parallelism, DecompileProfiler profiler) {
+        this.parallelism = Math.max(1, parallelism);
+        this.profiler = profiler;
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "mcp-decompile");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public DecompileProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Returns the future source of a class for bulk work (batches, scans, exports), which
+     * is not counted as an access in the profiler.
+     */
+    public CompletableFuture<String> submit(JavaClass cls) {
+        return submit(cls, false);
+    }
+
+    /**
+     * Returns the future source of a class, joining an in-flight decompilation if there is one.
+     *
+     * @param interactive whether a client asked for this class; those requests are queued
+     *                    ahead of bulk work and only they count as accesses in the profiler
+     */
+    public CompletableFuture<String> submit(JavaClass cls, boolean interactive) {
+        return start(cls, interactive, false).result;
+    }
+
+    /**
+     * Returns the future source of a class for bulk work that only needs the text, and lets
+     * {@link #unloadIfUnused(JavaClass)} unload the class afterwards if this request was
+     * the only one for it.
+     */
+    public CompletableFuture<String> submitUnloadable(JavaClass cls) {
+        return start(cls, false, true).result;
+    }
+
+    /**
+     * Unloads a class submitted with {@link #submitUnloadable(JavaClass)} once its source has
+     * been consumed, unless the class was already in Jadx's code cache or anything else
+     * asked for it through the coordinator since it was submitted.
+     *
+     * @return whether the class was unloaded
+     */
+    public boolean unloadIfUnused(JavaClass cls) {
+        boolean[] done = new boolean[1];
+        inFlight.compute(cls, (key, existing) -> {
+            if (unloadable.remove(key) && existing == null) {
+                key.unload();
+                done[0] = true;
+            }
+            return existing;
+        });
+        if (done[0]) {
+            unloaded.incrementAndGet();
+        }
+        return done[0];
+    }
+
+    private Task start(JavaClass cls, boolean interactive, boolean unloadAfter) {
+        requests.incrementAndGet();
+        if (interactive) {
+            profiler.recordAccess(cls.getRawName());
+        }
+        Task created = new Task(cls, unloadAfter);
+        Task existing = inFlight.compute(cls, (key, current) -> {
+            // any other request keeps the class loaded
+            unloadable.remove(key);
+            if (current != null) {
+                current.shared = true;
+                return current;
+            }
+            return created;
+        });
+        if (existing != created) {
+            coalesced.incrementAndGet();
+            if (interactive && !existing.interactive && !existing.started.isDone()) {
+                // queue it again ahead of bulk work; whichever copy runs first decompiles
+                promoted.incrementAndGet();
+                enqueue(existing, true);
+            }
+            return existing;
+        }
+
+        if (running.get() >= parallelism) {
+            waited.incrementAndGet();
+        }
+        enqueue(created, interactive);
+        return created;
+    }
+
+    private void enqueue(Task task, boolean interactive) {
+        if (interactive) {
+            task.interactive = true;
+        }
+        executor.execute(new QueuedTask(task, interactive, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Decompiles a class (or waits for an in-flight decompilation) and returns its source,
+     * giving up waiting after {@code budgetMillis}. The budget counts from when the
+     * decompilation starts running, or from this call if it is already running, so time
+     * spent queued for a decompile thread is not held against it. The decompilation keeps
+     * running after a timeout, so a later call finds the finished code.
+     *
+     * @param budgetMillis max time to wait, {@code 0} or less to wait without limit
+     * @param interactive  whether a client asked for this class, see {@link #submit(JavaClass, boolean)}
+     * @throws TimeoutException if the class is not decompiled within the budget
+     */
+    public String getCode(JavaClass cls, long budgetMillis, boolean interactive) throws Exception {
+        Task task = start(cls, interactive, false);
+        try {
+            if (budgetMillis <= 0) {
+                return task.result.get();
+            }
+            long called = System.nanoTime();
+            long startedAt = task.started.get();
+            long deadline = Math.max(called, startedAt) + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+            return task.result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (TimeoutException e) {
+            overBudget.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof Exception ex ? ex : e;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns coordinator counters for the metrics endpoint.
+     */
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("parallelism", parallelism)
+                .put("in_flight", inFlight.size())
+                .put("running", running.get())
+                .put("requests", requests.get())
+                .put("decompiles", decompiles.get())
+                .put("coalesced", coalesced.get())
+                .put("promoted", promoted.get())
+                .put("queued", executor.getQueue().size())
+                .put("waited", waited.get())
+                .put("failures", failures.get())
+                .put("over_budget", overBudget.get())
+                .put("unloaded", unloaded.get())
+                .put("decompile_ms", decompileNanos.get() / 1_000_000);
+    }
+
+    /**
+     * One decompilation of a class, shared by everyone asking for the class while it is in flight.
+     */
+    private final class Task {
+        private final JavaClass cls;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        /**
+         * Completes with the {@link System#nanoTime()} at which the decompilation started.
+         */
+        private final CompletableFuture<Long> started = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final boolean unloadAfter;
+        private volatile boolean interactive;
+        /**
+         * Set when another request joined this task; only changed while holding its entry lock.
+         */
+        private boolean shared;
+
+        Task(JavaClass cls, boolean unloadAfter) {
+            this.cls = cls;
+            this.unloadAfter = unloadAfter;
+        }
+
+        void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            running.incrementAndGet();
+            // a code-cache hit costs nothing and would skew the profile
+            boolean cached = cls.getClassNode().getCodeFromCache() != null;
+            long allocatedBefore = profiler.allocatedBytes();
+            long start = System.nanoTime();
+            started.complete(start);
+            String code = null;
+            Throwable failure = null;
+            try {
+                code = cls.getCode();
+                decompiles.incrementAndGet();
+            } catch (Throwable t) {
+                failures.incrementAndGet();
+                failure = t;
+            }
+            long elapsed = System.nanoTime() - start;
+            decompileNanos.addAndGet(elapsed);
+            if (!cached) {
+                profiler.recordDecompile(cls.getRawName(), elapsed, allocatedBefore, code != null ? code.length() : 0);
+            }
+            running.decrementAndGet();
+            boolean mayUnload = unloadAfter && failure == null && !cached;
+            inFlight.compute(cls, (key, current) -> {
+                if (current != this) {
+                    return current;
+                }
+                if (mayUnload && !shared) {
+                    unloadable.add(key);
+                }
+                return null;
+            });
+            // completed last, so whoever consumes the source finds the class unloadable
+            if (failure == null) {
+                result.complete(code);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Queue entry of a task; interactive entries come first, each priority in arrival order.
+     */
+    private record QueuedTask(Task task, boolean interactive, long seq) implements Runnable, Comparable<QueuedTask> {
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            if (interactive != other.interactive) {
+                return interactive ? -1 : 1;
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records what each class costs to decompile and how often it is requested, to size
+ * caches and choose a warmup order.
+ *
+ * <p>Per class it keeps the access count, the number of decompilations, their wall time,
+ * the bytes they allocated (where the JVM can measure it) and the size of the resulting
+ * source. At most {@code capacity} classes are tracked; when the table is full, the
+ * least requested tenth is dropped to make room.</p>
+ */
+public final class DecompileProfiler {
+
+    public enum Order {
+        COST, FREQUENCY
+    }
+
+    private static final String CSV_HEADER = "class,accesses,decompiles,wall_ms,max_wall_ms,allocated_bytes,source_chars";
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Stats> classes = new ConcurrentHashMap<>();
+    private final AtomicLong evicted = new AtomicLong();
+    private final com.sun.management.ThreadMXBean allocationBean;
+
+    public DecompileProfiler(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()) {
+            if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            allocationBean = sunBean;
+        } else {
+            allocationBean = null;
+        }
+    }
+
+    /**
+     * Counts a client request for the source of a class, whether or not it has to be
+     * decompiled. Bulk work is not counted, and neither are responses served from the
+     * response cache, which never get here.
+     */
+    public void recordAccess(String cls) {
+        Stats stats = stats(cls);
+        synchronized (stats) {
+            stats.accesses++;
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or {@code -1} if the JVM cannot tell.
+     * Pass the value to {@link #recordDecompile} after the decompilation.
+     */
+    public long allocatedBytes() {
+        return allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Records one decompilation run on the current thread.
+     *
+     * @param allocatedBefore value of {@link #allocatedBytes()} when the run started
+     * @param sourceChars     length of the resulting source, {@code 0} if it failed
+     */
+    public void recordDecompile(String cls, long wallNanos, long allocatedBefore, int sourceChars) {
+        long allocated = allocatedBefore >= 0 ? Math.max(0, allocatedBytes() - allocatedBefore) : 0;
+        Stats stats = stats(cls);
+        synchronized (stats) {
+            stats.decompiles++;
+            stats.wallNanos += wallNanos;
+            stats.maxWallNanos = Math.max(stats.maxWallNanos, wallNanos);
+            stats.allocatedBytes += allocated;
+            stats.sourceChars = sourceChars;
+        }
+    }
+
+    public boolean isAllocationTracked() {
+        return allocationBean != null;
+    }
+
+    /**
+     * Returns the top {@code limit} classes by total decompile time or by access count.
+     */
+    public JSONArray top(Order order, int limit) {
+        JSONArray array = new JSONArray();
+        for (Row row : sorted(order, limit)) {
+            array.put(new JSONObject()
+                    .put("class", row.cls())
+                    .put("accesses", row.accesses())
+                    .put("decompiles", row.decompiles())
+                    .put("wall_ms", row.wallNanos() / 1_000_000.0)
+                    .put("max_wall_ms", row.maxWallNanos() / 1_000_000.0)
+                    .put("allocated_bytes", row.allocatedBytes())
+                    .put("source_chars", row.sourceChars()));
+        }
+        return array;
+    }
+
+    /**
+     * Same rows as {@link #top}, as CSV with a header line.
+     */
+    public String toCsv(Order order, int limit) {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Row row : sorted(order, limit)) {
+            csv.append(csvField(row.cls())).append(',')
+                    .append(row.accesses()).append(',')
+                    .append(row.decompiles()).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f", row.wallNanos() / 1_000_000.0)).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f", row.maxWallNanos() / 1_000_000.0)).append(',')
+                    .append(row.allocatedBytes()).append(',')
+                    .append(row.sourceChars()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Returns profiler totals for the metrics endpoint.
+     */
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("tracked_classes", classes.size())
+                .put("capacity", capacity)
+                .put("evicted", evicted.get())
+                .put("allocation_tracked", isAllocationTracked());
+    }
+
+    private Stats stats(String cls) {
+        Stats stats = classes.get(cls);
+        if (stats != null) {
+            return stats;
+        }
+        if (classes.size() >= capacity) {
+            evict();
+        }
+        return classes.computeIfAbsent(cls, k -> new Stats());
+    }
+
+    /**
+     * Drops the least requested tenth of the tracked classes.
+     */
+    private synchronized void evict() {
+        if (classes.size() < capacity) {
+            return;
+        }
+        List<Row> rows = sorted(Order.FREQUENCY, 0);
+        int drop = Math.max(1, rows.size() / 10);
+        for (int i = rows.size() - drop; i < rows.size(); i++) {
+            classes.remove(rows.get(i).cls());
+        }
+        evicted.addAndGet(drop);
+    }
+
+    /**
+     * Snapshots the table sorted by the given order.
+     *
+     * @param limit max rows, {@code 0} or less for all
+     */
+    private List<Row> sorted(Order order, int limit) {
+        List<Row> rows = new ArrayList<>(classes.size());
+        classes.forEach((cls, stats) -> {
+            synchronized (stats) {
+                rows.add(new Row(cls, stats.accesses, stats.decompiles, stats.wallNanos, stats.maxWallNanos,
+                        stats.allocatedBytes, stats.sourceChars));
+            }
+        });
+        Comparator<Row> comparator = order == Order.COST
+                ? Comparator.comparingLong(Row::wallNanos).thenComparingLong(Row::allocatedBytes)
+                : Comparator.comparingLong(Row::accesses).thenComparingLong(Row::wallNanos);
+        rows.sort(comparator.reversed().thenComparing(Row::cls));
+        return limit > 0 && rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class Stats {
+        long accesses;
+        long decompiles;
+        long wallNanos;
+        long maxWallNanos;
+        long allocatedBytes;
+        int sourceChars;
+    }
+
+    private record Row(String cls, long accesses, long decompiles, long wallNanos, long maxWallNanos,
+                       long allocatedBytes, int sourceChars) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes server events to clients over Server-Sent Events ({@code GET /events}).
+ *
+ * <p>Connections stay open and each is written from its own "mcp-events" thread out of a
+ * queue of at most {@value #MAX_QUEUED_EVENTS} events, so neither the code publishing an
+ * event (e.g. the Jadx GUI thread) nor the other clients wait for a slow client. A client
+ * whose queue overflows, or whose write has been blocked for {@value #WRITE_TIMEOUT_SECONDS}
+ * seconds, is disconnected; it can reconnect and refetch what it caches. Idle connections
+ * get a comment line every {@value #KEEPALIVE_SECONDS} seconds, which also detects clients
+ * that went away. The number of clients is bounded.</p>
+ */
+public final class EventStream {
+
+    private static final int KEEPALIVE_SECONDS = 15;
+    private static final int WRITE_TIMEOUT_SECONDS = 30;
+    private static final int MAX_QUEUED_EVENTS = 256;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int maxClients;
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mcp-events-keepalive");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public EventStream(int maxClients) {
+        this.maxClients = maxClients;
+        keepalive.scheduleWithFixedDelay(this::checkClients, KEEPALIVE_SECONDS, KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Answers an {@code /events} request and keeps the connection for future events.
+     *
+     * @return {@code false} if there are too many clients; the connection is left untouched
+     */
+    public boolean subscribe(Transport.Connection connection) throws IOException {
+        if (clients.size() >= maxClients) {
+            return false;
+        }
+        OutputStream out = connection.getOutputStream();
+        out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nCache-Control: no-cache\r\n"
+                + "Connection: keep-alive\r\n\r\n: connected\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        Client client = new Client(connection, out);
+        clients.add(client);
+        Thread thread = new Thread(client::send, "mcp-events");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Queues an event for all connected clients; never blocks.
+     */
+    public void publish(String event, JSONObject data) {
+        published.incrementAndGet();
+        String message = "id: " + ids.incrementAndGet() + "\nevent: " + event + "\ndata: " + data + "\n\n";
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        for (Client client : clients) {
+            if (!client.queue.offer(bytes)) {
+                evict(client);
+            }
+        }
+    }
+
+    /**
+     * Sends keepalives to idle clients and disconnects those stuck in a write.
+     */
+    private void checkClients() {
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            long since = client.writingSince;
+            if (since != 0 && now - since > TimeUnit.SECONDS.toNanos(WRITE_TIMEOUT_SECONDS)) {
+                evict(client);
+            } else if (client.queue.isEmpty()) {
+                client.queue.offer(KEEPALIVE);
+            }
+        }
+    }
+
+    private void evict(Client client) {
+        if (clients.remove(client)) {
+            evicted.incrementAndGet();
+            client.close();
+        }
+    }
+
+    /**
+     * Returns event stream counters for the metrics endpoint.
+     */
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("clients", clients.size())
+                .put("max_clients", maxClients)
+                .put("published", published.get())
+                .put("evicted", evicted.get());
+    }
+
+    private final class Client {
+        private final Transport.Connection connection;
+        private final OutputStream out;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+        /**
+         * {@link System#nanoTime()} at which the current write started, {@code 0} while not writing.
+         */
+        private volatile long writingSince;
+        private volatile boolean closed;
+
+        Client(Transport.Connection connection, OutputStream out) {
+            this.connection = connection;
+            this.out = out;
+        }
+
+        /**
+         * Writes queued events until the client goes away or is evicted.
+         */
+        void send() {
+            try {
+                while (!closed) {
+                    byte[] bytes = queue.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                    if (bytes == null) {
+                        continue;
+                    }
+                    writingSince = System.nanoTime();
+                    out.write(bytes);
+                    out.flush();
+                    writingSince = 0;
+                }
+            } catch (IOException | InterruptedException e) {
+                // gone, or closed by an eviction
+            }
+            clients.remove(this);
+            close();
+        }
+
+        /**
+         * Closes the connection, which also fails a write blocked on it.
+         */
+        void close() {
+            closed = true;
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
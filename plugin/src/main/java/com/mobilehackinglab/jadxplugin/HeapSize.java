@@ -0,0 +1,50 @@
+package com.mobilehackinglab.jadxplugin;
+
+/**
+ * Estimates of the heap space taken by objects, for reporting the retained size of indexes.
+ *
+ * <p>Sizes follow the HotSpot layout of a 64-bit JVM with compressed references
+ * (heaps under 32 GB): 12-byte object headers, 16-byte array headers, 4-byte references
+ * and 8-byte alignment. Strings are counted with their compact (Latin-1) or UTF-16
+ * backing array.</p>
+ */
+public final class HeapSize {
+
+    public static final int REFERENCE = 4;
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    // byte[] value, int hash, byte coder, boolean hashIsZero
+    private static final int STRING_FIELDS = REFERENCE + 4 + 1 + 1;
+
+    private HeapSize() {
+    }
+
+    /**
+     * Size of an object with the given total size of its fields.
+     */
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Size of an array with elements of the given size ({@link #REFERENCE} for object arrays).
+     */
+    public static long array(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    /**
+     * Size of a string including its backing array.
+     */
+    public static long string(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        return object(STRING_FIELDS) + array(value.length(), latin1 ? 1 : 2);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
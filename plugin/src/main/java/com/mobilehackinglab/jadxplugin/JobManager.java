@@ -0,0 +1,387 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs long tool calls in the background, so clients can poll for progress and results
+ * instead of holding an HTTP request open past their timeout.
+ *
+ * <p>Jobs run on a small bounded pool; when its queue is full, submissions are rejected.
+ * Submitting a call identical to a queued or running job returns that job instead of
+ * starting another one. Finished jobs are kept for a limited time, and only the most
+ * recent {@value #MAX_FINISHED_JOBS} of them whose results together stay under
+ * {@value #MAX_RETAINED_RESULT_CHARS} serialized characters. A job that completed keeps
+ * only its final result; its partial results are dropped.</p>
+ */
+public final class JobManager {
+
+    private static final int MAX_FINISHED_JOBS = 100;
+    private static final long MAX_RETAINED_RESULT_CHARS = 32L * 1024 * 1024;
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+        boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * Handed to a running tool to report progress and partial results.
+     * Tools that loop over classes should check {@link #isCancelled()} between iterations.
+     */
+    public interface JobContext extends BackgroundIndex.Progress {
+        JobContext NONE = new JobContext() {
+            @Override
+            public void setTotal(int total) {
+            }
+
+            @Override
+            public void advance() {
+            }
+
+            @Override
+            public void addPartial(JSONObject item) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return Thread.currentThread().isInterrupted();
+            }
+        };
+
+        /**
+         * Publishes one item of the result before the tool finishes.
+         */
+        void addPartial(JSONObject item);
+
+        boolean isCancelled();
+    }
+
+    public interface Runner {
+        JSONObject run(JobContext context) throws Exception;
+    }
+
+    public record Submission(Job job, boolean deduplicated) {
+    }
+
+    private final int threads;
+    private final int maxQueued;
+    private final long retentionMillis;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong ids = new AtomicLong();
+
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, Job> activeByKey = new HashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public JobManager(int threads, int maxQueued, long retentionMillis) {
+        this.threads = Math.max(1, threads);
+        this.maxQueued = Math.max(1, maxQueued);
+        this.retentionMillis = retentionMillis;
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.maxQueued), r -> {
+            Thread thread = new Thread(r, "mcp-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a job for a tool call, or returns the queued or running job for the same call.
+     *
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public synchronized Submission submit(String tool, JSONObject params, Runner runner) {
+        prune();
+        String key = tool + ':' + ResponseCache.canonicalJson(params);
+        Job existing = activeByKey.get(key);
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            return new Submission(existing, true);
+        }
+
+        Job job = new Job("job-" + ids.incrementAndGet(), tool, key, runner);
+        try {
+            job.future = executor.submit(job::run);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        jobs.put(job.id, job);
+        activeByKey.put(key, job);
+        return new Submission(job, false);
+    }
+
+    public synchronized Job get(String id) {
+        prune();
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancels a queued or running job.
+     *
+     * @return {@code false} if there is no such job or it has already finished
+     */
+    public boolean cancel(String id) {
+        Job job = get(id);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        cancelled.incrementAndGet();
+        return true;
+    }
+
+    public synchronized JSONArray list() {
+        prune();
+        JSONArray array = new JSONArray();
+        for (Job job : jobs.values()) {
+            array.put(job.statusJson());
+        }
+        return array;
+    }
+
+    /**
+     * Suggested client back-off in seconds when the job queue is full.
+     */
+    public int estimateRetryAfterSeconds() {
+        return 5;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns job counters for the metrics endpoint.
+     */
+    public synchronized JSONObject toJson() {
+        int active = activeByKey.size();
+        long retainedChars = 0;
+        for (Job job : jobs.values()) {
+            retainedChars += job.retainedChars;
+        }
+        return new JSONObject()
+                .put("threads", threads)
+                .put("max_queued", maxQueued)
+                .put("active", active)
+                .put("retained", jobs.size())
+                .put("retained_result_chars", retainedChars)
+                .put("submitted", submitted.get())
+                .put("deduplicated", deduplicated.get())
+                .put("rejected", rejected.get())
+                .put("cancelled", cancelled.get());
+    }
+
+    /**
+     * Drops finished jobs past their retention time, and the oldest ones beyond the count
+     * and result size limits.
+     */
+    private void prune() {
+        long now = System.currentTimeMillis();
+        int finished = 0;
+        long retainedChars = 0;
+        for (Job job : jobs.values()) {
+            if (job.state.isFinished()) {
+                finished++;
+                retainedChars += job.retainedChars;
+            }
+        }
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            // the most recently finished job is kept however large, so its client can fetch it
+            boolean overSize = retainedChars > MAX_RETAINED_RESULT_CHARS && finished > 1;
+            if (job.state.isFinished() && (finished > MAX_FINISHED_JOBS || overSize || now - job.finishedAt > retentionMillis)) {
+                it.remove();
+                finished--;
+                retainedChars -= job.retainedChars;
+            }
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        activeByKey.remove(job.key, job);
+        prune();
+    }
+
+    public final class Job implements JobContext {
+        private final String id;
+        private final String tool;
+        private final String key;
+        private final Runner runner;
+        private final long createdAt = System.currentTimeMillis();
+        private final ArrayList<JSONObject> partial = new ArrayList<>();
+        private final AtomicInteger published = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private volatile int total;
+        private volatile State state = State.QUEUED;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile JSONObject result;
+        private volatile String error;
+        private volatile boolean cancelRequested;
+        private volatile long retainedChars;
+        private Future<?> future;
+
+        private Job(String id, String tool, String key, Runner runner) {
+            this.id = id;
+            this.tool = tool;
+            this.key = key;
+            this.runner = runner;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        private void run() {
+            synchronized (this) {
+                if (cancelRequested) {
+                    return;
+                }
+                state = State.RUNNING;
+                startedAt = System.currentTimeMillis();
+            }
+            JSONObject json = null;
+            String failure = null;
+            try {
+                json = runner.run(this);
+                if (json.has("error")) {
+                    failure = json.getString("error");
+                }
+            } catch (Exception e) {
+                failure = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+            long chars = json != null ? json.toString().length() : 0;
+            synchronized (this) {
+                if (state == State.RUNNING) {
+                    result = json;
+                    error = failure;
+                    retainedChars = chars;
+                    state = failure == null ? State.DONE : State.FAILED;
+                    finishedAt = System.currentTimeMillis();
+                    // the final result supersedes them
+                    synchronized (partial) {
+                        partial.clear();
+                        partial.trimToSize();
+                    }
+                }
+            }
+            finished(this);
+        }
+
+        private boolean cancel() {
+            synchronized (this) {
+                if (state.isFinished()) {
+                    return false;
+                }
+                cancelRequested = true;
+                state = State.CANCELLED;
+                finishedAt = System.currentTimeMillis();
+            }
+            // the partial results are all a cancelled job returns
+            long chars = 0;
+            synchronized (partial) {
+                for (JSONObject item : partial) {
+                    chars += item.toString().length();
+                }
+            }
+            retainedChars = chars;
+            future.cancel(true);
+            finished(this);
+            return true;
+        }
+
+        @Override
+        public void setTotal(int count) {
+            total = count;
+        }
+
+        @Override
+        public void advance() {
+            done.incrementAndGet();
+        }
+
+        @Override
+        public void addPartial(JSONObject item) {
+            synchronized (partial) {
+                if (!state.isFinished()) {
+                    partial.add(item);
+                    published.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelRequested || Thread.currentThread().isInterrupted();
+        }
+
+        public JSONObject statusJson() {
+            long now = System.currentTimeMillis();
+            JSONObject json = new JSONObject()
+                    .put("job_id", id)
+                    .put("tool", tool)
+                    .put("state", state.name().toLowerCase())
+                    .put("done", done.get())
+                    .put("total", total)
+                    .put("queued_ms", (startedAt > 0 ? startedAt : (finishedAt > 0 ? finishedAt : now)) - createdAt);
+            if (startedAt > 0) {
+                json.put("elapsed_ms", (finishedAt > 0 ? finishedAt : now) - startedAt);
+            }
+            json.put("partial_results", published.get());
+            if (error != null) {
+                json.put("error", error);
+            }
+            return json;
+        }
+
+        /**
+         * Returns the final result once the job is done, otherwise the partial results
+         * published so far, starting at {@code offset}.
+         */
+        public JSONObject resultJson(int offset, int limit) {
+            JSONObject json = statusJson();
+            if (state == State.DONE || state == State.FAILED) {
+                return json.put("result", result);
+            }
+            JSONArray items = new JSONArray();
+            int next;
+            synchronized (partial) {
+                int from = Math.min(Math.max(0, offset), partial.size());
+                int to = Math.min(from + limit, partial.size());
+                for (int i = from; i < to; i++) {
+                    items.put(partial.get(i));
+                }
+                next = to;
+            }
+            return json
+                    .put("partial", items)
+                    .put("next_offset", next);
+        }
+    }
+}
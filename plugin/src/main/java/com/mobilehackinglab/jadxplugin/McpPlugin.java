@@ -4,6 +4,14 @@ import jadx.api.*;
 import jadx.api.plugins.JadxPlugin;
 import jadx.api.plugins.JadxPluginContext;
 import jadx.api.plugins.JadxPluginInfo;
+import jadx.api.plugins.events.IJadxEvents;
+import jadx.api.plugins.events.JadxEvents;
+import jadx.api.plugins.events.types.NodeRenamedByUser;
+import jadx.api.metadata.ICodeNodeRef;
+import jadx.api.metadata.annotations.VarNode;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
 import jadx.core.xmlgen.ResContainer;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -12,35 +20,243 @@ import org.json.JSONObject;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
 
 public class McpPlugin implements JadxPlugin {
     public static final String PLUGIN_ID = "jadx-mcp";
 
-    private ServerSocket serverSocket;
+    /**
+     * Tools whose results never change for a loaded APK and can be served from the response cache.
+     */
+    private static final Set<String> CACHEABLE_TOOLS = Set.of(
+            "get_class_source",
+            "get_methods_of_class",
+            "get_fields_of_class",
+            "get_class_xrefs",
+            "get_method_xrefs",
+            "get_field_xrefs");
+
+    /**
+     * Tools that scan the whole APK; they yield to interactive lookups in the request queue.
+     */
+    private static final Set<String> BULK_TOOLS = Set.of(
+            "search_method_by_name", "get_class_sources", "scan_api_usages", "export_archive");
+
+    /**
+     * Comment Jadx puts into methods it could not decompile.
+     */
+    private static final String DECOMPILE_FAILED_MARKER = "Code decompiled incorrectly";
+
+    /**
+     * Job management tools, which are never run as jobs themselves.
+     */
+    private static final Set<String> JOB_TOOLS = Set.of(
+            "submit_job", "get_job_status", "get_job_result", "cancel_job", "list_jobs");
+
+    /**
+     * Tools served from a background index over all classes, which is only built once the
+     * input has finished loading. Other tools are served as soon as a decompiler exists.
+     */
+    private static final Set<String> INDEXED_TOOLS = Set.of(
+            "list_packages", "search_symbols", "search_strings",
+            "save_fingerprints", "diff_against");
+
+    private static final String UNIX_PREFIX = "unix:";
+    private static final int READER_THREADS = 2;
+    private static final int READ_TIMEOUT_MS = 10_000;
+    private static final int MAX_EVENT_CLIENTS = 16;
+
+    /**
+     * Parsed HTTP request.
+     */
+    private record HttpRequest(String method, String path, String ifNoneMatch, String accept, String body) {
+    }
+
+    /**
+     * Writes a response body of unknown length; sent with chunked transfer encoding.
+     */
+    private interface StreamingBody {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Serialized HTTP response body and its content type, its entity tag if cacheable, and a
+     * {@code Retry-After} value in seconds if the request should be retried (0 otherwise).
+     */
+    private record Response(byte[] body, String contentType, String etag, int retryAfter, StreamingBody stream) {
+        Response(byte[] body, String contentType, String etag, int retryAfter) {
+            this(body, contentType, etag, retryAfter, null);
+        }
+    }
+
+    private Transport.Server server;
     private ExecutorService executor;
     private JadxPluginContext context;
+    private Supplier<JadxDecompiler> decompilerSupplier;
     private McpPluginOptions pluginOptions;
     private boolean running = false;
+    private DecompileCoordinator decompileCoordinator;
+    private ResponseCache responseCache;
+    private JobManager jobManager;
+    private AdmissionController admissionController;
+    private JadxDecompiler archiveOwner;
+    private SourceArchive sourceArchive;
+    private EventStream eventStream;
+    /**
+     * Raw names of top-level classes whose archived source is outdated by renames.
+     */
+    private final Set<String> staleArchivedClasses = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService indexExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "mcp-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final BackgroundIndex<StringIndex> stringIndex = new BackgroundIndex<>("strings", indexExecutor,
+            (decompiler, progress) -> StringIndex.build(decompiler.getRoot().getClasses(), progress));
+    private final BackgroundIndex<PackageTrie> packageIndex = new BackgroundIndex<>("packages", indexExecutor,
+            (decompiler, progress) -> PackageTrie.build(decompiler.getRoot().getClasses(), progress));
+    private final BackgroundIndex<ClassFingerprints> fingerprintIndex = new BackgroundIndex<>("fingerprints", indexExecutor,
+            (decompiler, progress) -> ClassFingerprints.build(decompiler.getRoot().getClasses(), progress));
+    private final BackgroundIndex<SymbolTable> symbolIndex = new BackgroundIndex<>("symbols", indexExecutor,
+            (decompiler, progress) -> SymbolTable.build(decompiler.getRoot().getClasses(), progress));
+    private final List<BackgroundIndex<?>> indexes = List.of(stringIndex, packageIndex, fingerprintIndex, symbolIndex);
 
     public McpPlugin() {
     }
 
+    /**
+     * Creates a plugin instance for the headless {@link McpServerMain} launcher.
+     * The supplier returns {@code null} until the decompiler has finished loading.
+     */
+    McpPlugin(Supplier<JadxDecompiler> decompilerSupplier, McpPluginOptions pluginOptions) {
+        this.decompilerSupplier = decompilerSupplier;
+        this.pluginOptions = pluginOptions;
+    }
+
     /**
      * Called by Jadx to initialize the plugin.
      */
     @Override
     public void init(JadxPluginContext context) {
         this.context = context;
+        this.decompilerSupplier = context::getDecompiler;
 
         this.pluginOptions = new McpPluginOptions();
         this.context.registerOptions(this.pluginOptions);
+        subscribeEvents(context.events());
 
         new Thread(this::safePluginStartup).start();
     }
 
+    /**
+     * Listens for renames and project reloads to drop outdated cached responses and indexes.
+     */
+    void subscribeEvents(IJadxEvents events) {
+        events.addListener(JadxEvents.NODE_RENAMED_BY_USER, this::onNodeRenamed);
+        events.addListener(JadxEvents.RELOAD_PROJECT, event -> invalidateAll("reload"));
+    }
+
+    /**
+     * Invalidates what a rename affects: cached responses and archived sources of the class
+     * declaring the renamed node, the classes using it and the classes it uses (whose xref
+     * results name it), and the package index if a class was renamed. Clients are notified
+     * on {@code /events}.
+     */
+    private void onNodeRenamed(NodeRenamedByUser event) {
+        if (responseCache == null) {
+            return;
+        }
+        ICodeNodeRef node = event.getNode();
+        Set<ClassNode> affected = new HashSet<>();
+        String nodeType;
+        if (node instanceof ClassNode cls) {
+            nodeType = "class";
+            affected.add(cls);
+            affected.addAll(cls.getUseIn());
+            affected.addAll(cls.getDependencies());
+            packageIndex.invalidate();
+            symbolIndex.refresh(getDecompiler());
+        } else if (node instanceof MethodNode mth) {
+            nodeType = "method";
+            affected.add(mth.getParentClass());
+            mth.getUseIn().forEach(user -> affected.add(user.getParentClass()));
+            affected.addAll(mth.getParentClass().getTopParentClass().getDependencies());
+            symbolIndex.refresh(getDecompiler());
+        } else if (node instanceof FieldNode field) {
+            nodeType = "field";
+            affected.add(field.getParentClass());
+            field.getUseIn().forEach(user -> affected.add(user.getParentClass()));
+            affected.addAll(field.getParentClass().getTopParentClass().getDependencies());
+            symbolIndex.refresh(getDecompiler());
+        } else if (node instanceof VarNode var) {
+            nodeType = "variable";
+            affected.add(var.getMth().getParentClass());
+        } else {
+            // packages and anything else: too broad to track per class
+            invalidateAll("rename");
+            return;
+        }
+
+        Set<String> names = new HashSet<>();
+        for (ClassNode cls : affected) {
+            ClassNode top = cls.getTopParentClass();
+            names.add(top.getFullName());
+            staleArchivedClasses.add(top.getRawName());
+        }
+        if (node instanceof ClassNode cls && !cls.isInner() && event.getOldName() != null) {
+            String oldName = event.getOldName();
+            names.add(oldName.contains(".") || cls.getPackage().isEmpty() ? oldName : cls.getPackage() + "." + oldName);
+        }
+        int dropped = responseCache.invalidateClasses(names);
+        eventStream.publish("invalidate", new JSONObject()
+                .put("reason", "rename")
+                .put("scope", "classes")
+                .put("node_type", nodeType)
+                .put("old_name", event.getOldName())
+                .put("new_name", event.getNewName())
+                .put("classes", new JSONArray(names.stream().sorted().toList()))
+                .put("dropped_responses", dropped));
+    }
+
+    /**
+     * Drops all cached responses, indexes and the source archive, and notifies clients.
+     */
+    private void invalidateAll(String reason) {
+        if (responseCache == null) {
+            return;
+        }
+        responseCache.invalidateAll();
+        for (BackgroundIndex<?> index : indexes) {
+            index.invalidate();
+        }
+        closeSourceArchive();
+        staleArchivedClasses.clear();
+        eventStream.publish("invalidate", new JSONObject()
+                .put("reason", reason)
+                .put("scope", "all"));
+    }
+
     /**
      * Provides metadata for the plugin to Jadx.
      */
@@ -55,23 +271,51 @@ public class McpPlugin implements JadxPlugin {
     }
 
     /**
-     * Starts the HTTP server if Jadx is ready.
+     * Starts the HTTP server right away and warms up indexes once Jadx has loaded the input.
+     * Until then, tools answer with a retryable "not ready" status.
      */
     private void safePluginStartup() {
-        if (!waitForJadxLoad()) {
-            System.err.println("[MCP] Jadx initialization failed. Not starting server.");
-            return;
-        }
-
         try {
-            URL httpInterface = parseHttpInterface(pluginOptions.getHttpInterface());
-            startServer(httpInterface);
-            System.out.println("[MCP] Server started successfully at " + httpInterface.getProtocol() + "://" + httpInterface.getHost() + ":" + httpInterface.getPort());
+            startServer(openTransport(pluginOptions.getHttpInterface()));
+            System.out.println("[MCP] Server started successfully at " + server.describe());
         } catch (IOException | IllegalArgumentException e) {
             System.err.println("[MCP] Failed to start server: " + e.getMessage());
+            return;
+        }
+
+        if (waitForJadxLoad()) {
+            warmUpIndexes();
+        } else {
+            System.err.println("[MCP] Indexes will be built on first use.");
         }
     }
 
+    /**
+     * Starts the HTTP server for the headless launcher. Tools become available
+     * once the decompiler supplier returns a loaded decompiler.
+     */
+    void startStandalone() throws IOException {
+        startServer(openTransport(pluginOptions.getHttpInterface()));
+        System.out.println("[MCP] Server started successfully at " + server.describe());
+    }
+
+    /**
+     * Starts background builds of all indexes for the current decompiler.
+     */
+    void warmUpIndexes() {
+        JadxDecompiler decompiler = getDecompiler();
+        for (BackgroundIndex<?> index : indexes) {
+            index.start(decompiler);
+        }
+    }
+
+    /**
+     * Returns the decompiler currently served by the plugin.
+     */
+    private JadxDecompiler getDecompiler() {
+        return decompilerSupplier.get();
+    }
+
     /**
      * Waits for the Jadx decompiler to finish loading classes.
      */
@@ -79,7 +323,7 @@ public class McpPlugin implements JadxPlugin {
         int retries = 0;
         while (retries < 30) {
             if (isDecompilerValid()) {
-                int count = context.getDecompiler().getClassesWithInners().size();
+                int count = getDecompiler().getClassesWithInners().size();
                 System.out.println("[MCP] Jadx fully loaded. Classes found: " + count);
                 return true;
             }
@@ -105,15 +349,36 @@ public class McpPlugin implements JadxPlugin {
      */
     private boolean isDecompilerValid() {
         try {
-            return context != null
-                    && context.getDecompiler() != null
-                    && context.getDecompiler().getRoot() != null
-                    && !context.getDecompiler().getClassesWithInners().isEmpty();
+            return decompilerSupplier != null
+                    && getDecompiler() != null
+                    && getDecompiler().getRoot() != null
+                    && !getDecompiler().getClassesWithInners().isEmpty();
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Opens the listening endpoint for the configured interface: a Unix domain socket for
+     * {@code unix:/path/to/socket}, otherwise a TCP port for an {@code http://host:port} URL.
+     *
+     * @throws IllegalArgumentException if the interface string is invalid
+     */
+    private Transport.Server openTransport(String httpInterface) throws IOException {
+        if (httpInterface.startsWith(UNIX_PREFIX)) {
+            String path = httpInterface.substring(UNIX_PREFIX.length());
+            if (path.startsWith("//")) {
+                path = path.substring(2);
+            }
+            if (path.isEmpty()) {
+                throw new IllegalArgumentException("Missing socket path in interface: " + httpInterface);
+            }
+            return Transport.unix(Path.of(path), pluginOptions.getListenBacklog(), READ_TIMEOUT_MS);
+        }
+        URL url = parseHttpInterface(httpInterface);
+        return Transport.tcp(url.getHost(), url.getPort(), pluginOptions.getListenBacklog(), READ_TIMEOUT_MS);
+    }
+
     /**
      * Parses and validates the given HTTP interface string.
      *
@@ -158,21 +423,34 @@ public class McpPlugin implements JadxPlugin {
     }
 
     /**
-     * Starts the TCP server and accepts incoming connections.
+     * Starts the HTTP server on the given endpoint and accepts incoming connections.
+     *
+     * <p>Requests pass two bounded stages: a small reader pool parses them, then the
+     * {@link AdmissionController} queues them by priority for the worker pool. When either
+     * stage is full, the client gets an immediate {@code 503} with {@code Retry-After}.</p>
      */
-    private void startServer(URL httpInterface) throws IOException {
-        String host = httpInterface.getHost();
-        int port = httpInterface.getPort();
-        InetAddress bindAddr = InetAddress.getByName(host);
-
-        serverSocket = new ServerSocket(port, 50, bindAddr);
-        executor = Executors.newFixedThreadPool(5);
+    private void startServer(Transport.Server transport) {
+        server = transport;
+        decompileCoordinator = new DecompileCoordinator(pluginOptions.getDecompileThreads(),
+                new DecompileProfiler(pluginOptions.getProfileMaxClasses()));
+        responseCache = new ResponseCache(pluginOptions.getResponseCacheMb() * 1024L * 1024L);
+        eventStream = new EventStream(MAX_EVENT_CLIENTS);
+        jobManager = new JobManager(pluginOptions.getJobThreads(), pluginOptions.getMaxQueuedJobs(),
+                pluginOptions.getJobRetentionMinutes() * 60_000L);
+        admissionController = new AdmissionController(pluginOptions.getWorkerThreads(),
+                pluginOptions.getMaxQueuedRequests(), pluginOptions.getMaxQueueMs());
+        executor = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pluginOptions.getMaxQueuedRequests()));
         running = true;
         new Thread(() -> {
             while (running) {
                 try {
-                    Socket clientSocket = serverSocket.accept();
-                    executor.submit(() -> handleConnection(clientSocket));
+                    Transport.Connection clientSocket = server.accept();
+                    try {
+                        executor.execute(() -> handleConnection(clientSocket));
+                    } catch (RejectedExecutionException e) {
+                        rejectConnection(clientSocket, admissionController.estimateRetryAfterSeconds());
+                    }
                 } catch (IOException e) {
                     if (running) {
                         System.err.println("[MCP] Error accepting connection: " + e.getMessage());
@@ -183,109 +461,324 @@ public class McpPlugin implements JadxPlugin {
     }
 
     /**
-     * Handles incoming HTTP requests to the plugin.
+     * Reads an incoming HTTP request and hands it to the admission controller.
+     * Health endpoints are answered right away, bypassing the queue.
      */
-    private void handleConnection(Socket socket) {
-        try (socket;
-             BufferedReader in = new BufferedReader(
-                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-             OutputStream outStream = socket.getOutputStream()) {
+    private void handleConnection(Transport.Connection socket) {
+        boolean handedOff = false;
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            HttpRequest request = readRequest(in);
+            if (request == null) {
+                return;
+            }
 
-            String requestLine = in.readLine();
-            if (requestLine == null) {
+            if ("/events".equals(request.path())) {
+                if (!eventStream.subscribe(socket)) {
+                    rejectConnection(socket, 30);
+                }
+                handedOff = true;
                 return;
             }
 
-            String[] parts = requestLine.split(" ");
-            if (parts.length < 2) {
+            if ("/ready".equals(request.path()) || "/metrics".equals(request.path())) {
+                writeResponse(socket.getOutputStream(), serve(request), request.ifNoneMatch());
                 return;
             }
 
-            String method = parts[0];
-            String path = parts[1];
+            handedOff = admissionController.submit(priorityOf(request), new AdmissionController.Task() {
+                @Override
+                public void run() {
+                    try (socket) {
+                        writeResponse(socket.getOutputStream(), serve(request), request.ifNoneMatch());
+                    } catch (Exception e) {
+                        System.err.println("[MCP] Error handling connection: " + e.getMessage());
+                    }
+                }
 
-            int contentLength = 0;
-            String header;
-            while ((header = in.readLine()) != null && !header.isEmpty()) {
-                if (header.toLowerCase().startsWith("content-length:")) {
-                    contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+                @Override
+                public void shed(int retryAfterSeconds) {
+                    rejectConnection(socket, retryAfterSeconds);
                 }
+            });
+            if (!handedOff) {
+                handedOff = true;
+                rejectConnection(socket, admissionController.estimateRetryAfterSeconds());
             }
-
-            String body = "";
-            if (contentLength > 0) {
-                char[] buffer = new char[contentLength];
-                int bytesRead = in.read(buffer);
-                body = new String(buffer, 0, bytesRead);
+        } catch (Exception e) {
+            System.err.println("[MCP] Error handling connection: " + e.getMessage());
+            // At this point, response may be partially written; best-effort logging only.
+        } finally {
+            if (!handedOff) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
             }
+        }
+    }
 
-            JSONObject responseJson;
+    /**
+     * Parses the request line, the headers the server cares about, and the body.
+     *
+     * @return the request, or {@code null} if the connection closed or the request line is malformed
+     */
+    private HttpRequest readRequest(BufferedReader in) throws IOException {
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return null;
+        }
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2) {
+            return null;
+        }
 
-            if ("/invoke".equals(path) && "POST".equalsIgnoreCase(method)) {
-                responseJson = processInvokeRequest(body);
-            } else if ("/tools".equals(path)) {
-                responseJson = getToolsJson();
-            } else {
-                responseJson = errorJson("Not found");
+        String method = parts[0];
+        String path = parts[1];
+
+        int contentLength = 0;
+        String ifNoneMatch = null;
+        String accept = null;
+        String header;
+        while ((header = in.readLine()) != null && !header.isEmpty()) {
+            if (header.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+            } else if (header.toLowerCase().startsWith("if-none-match:")) {
+                ifNoneMatch = header.substring("if-none-match:".length()).trim();
+            } else if (header.toLowerCase().startsWith("accept:")) {
+                accept = header.substring("accept:".length()).trim();
             }
+        }
+
+        String body = "";
+        if (contentLength > 0) {
+            char[] buffer = new char[contentLength];
+            int bytesRead = 0;
+            while (bytesRead < contentLength) {
+                int n = in.read(buffer, bytesRead, contentLength - bytesRead);
+                if (n == -1) {
+                    break;
+                }
+                bytesRead += n;
+            }
+            body = new String(buffer, 0, bytesRead);
+        }
+        return new HttpRequest(method, path, ifNoneMatch, accept, body);
+    }
+
+    /**
+     * Routes a request to the matching endpoint and encodes the result in the format
+     * negotiated from its {@code Accept} header.
+     */
+    private Response serve(HttpRequest request) {
+        String path = request.path();
+        ResponseEncoder encoder = ResponseEncoder.negotiate(request.accept());
+        if ("/invoke".equals(path) && "POST".equalsIgnoreCase(request.method())) {
+            return handleInvoke(request.body(), encoder);
+        } else if ("/tools".equals(path)) {
+            return cachedResponse("/tools", new JSONObject(), encoder, this::getToolsJson);
+        } else if ("/ready".equals(path)) {
+            return toResponse(getReadyJson(), encoder);
+        } else if ("/metrics".equals(path)) {
+            return toResponse(getMetricsJson(), encoder);
+        }
+        return toResponse(errorJson("Not found"), encoder);
+    }
+
+    /**
+     * Bulk tools run behind interactive lookups when requests queue up.
+     */
+    private AdmissionController.Priority priorityOf(HttpRequest request) {
+        if (!"/invoke".equals(request.path())) {
+            return AdmissionController.Priority.INTERACTIVE;
+        }
+        try {
+            String tool = new JSONObject(request.body()).optString("tool", "");
+            return BULK_TOOLS.contains(tool) ? AdmissionController.Priority.BULK : AdmissionController.Priority.INTERACTIVE;
+        } catch (JSONException e) {
+            return AdmissionController.Priority.INTERACTIVE;
+        }
+    }
 
-            byte[] respBytes = responseJson.toString(2).getBytes(StandardCharsets.UTF_8);
+    /**
+     * Writes a response, turning it into {@code 304 Not Modified} if the client's
+     * {@code If-None-Match} matches its entity tag.
+     */
+    private void writeResponse(OutputStream outStream, Response response, String ifNoneMatch) throws IOException {
+        String status = "200 OK";
+        StringBuilder extraHeaders = new StringBuilder();
+        byte[] respBytes = response.body();
+        if (response.retryAfter() > 0) {
+            status = "503 Service Unavailable";
+            extraHeaders.append("Retry-After: ").append(response.retryAfter()).append("\r\n");
+        }
+        if (response.etag() != null) {
+            extraHeaders.append("ETag: ").append(response.etag()).append("\r\n");
+            if (responseCache.matches(ifNoneMatch, response.etag())) {
+                status = "304 Not Modified";
+                respBytes = new byte[0];
+            }
+        }
 
+        if (response.stream() != null) {
             PrintWriter out = new PrintWriter(outStream, true);
-            out.printf(
-                    "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: %d\r\nConnection: close\r\n\r\n",
-                    respBytes.length);
+            out.printf("HTTP/1.1 200 OK\r\nContent-Type: %s\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n", response.contentType());
             out.flush();
 
-            outStream.write(respBytes);
-            outStream.flush();
+            ChunkedOutputStream chunked = new ChunkedOutputStream(outStream);
+            response.stream().writeTo(chunked);
+            chunked.finish();
+            return;
+        }
 
-        } catch (Exception e) {
-            System.err.println("[MCP] Error handling connection: " + e.getMessage());
-            // At this point, response may be partially written; best-effort logging only.
+        PrintWriter out = new PrintWriter(outStream, true);
+        out.printf(
+                "HTTP/1.1 %s\r\nContent-Type: %s\r\nContent-Length: %d\r\n%sConnection: close\r\n\r\n",
+                status, response.contentType(), respBytes.length, extraHeaders);
+        out.flush();
+
+        outStream.write(respBytes);
+        outStream.flush();
+    }
+
+    /**
+     * Answers with a fast {@code 503} because the server is overloaded, then closes the connection.
+     */
+    private void rejectConnection(Transport.Connection socket, int retryAfterSeconds) {
+        try (socket) {
+            JSONObject json = retryableJson("Server is overloaded. Retry shortly.", retryAfterSeconds);
+            writeResponse(socket.getOutputStream(), toResponse(json, ResponseEncoder.JSON), null);
+        } catch (IOException e) {
+            System.err.println("[MCP] Error rejecting connection: " + e.getMessage());
         }
     }
 
     /**
-     * Handles tool invocation from the client, routing to the correct handler.
+     * Parses an {@code /invoke} request and serves it, from the response cache when the
+     * tool's result cannot change for the loaded APK.
      *
      * @param requestBody JSON request with tool and parameters
-     * @return JSON response object
+     * @param encoder     format of the response body
      */
-    private JSONObject processInvokeRequest(String requestBody) {
+    private Response handleInvoke(String requestBody, ResponseEncoder encoder) {
+        JSONObject requestJson;
         try {
-            JSONObject requestJson = new JSONObject(requestBody);
+            requestJson = new JSONObject(requestBody);
+        } catch (JSONException e) {
+            return toResponse(errorJson("Invalid JSON in request body: " + e.getMessage()), encoder);
+        }
 
-            String toolName = requestJson.optString("tool", null);
-            if (toolName == null || toolName.isEmpty()) {
-                return errorJson("Missing required field 'tool'");
-            }
+        String toolName = requestJson.optString("tool", null);
+        if (toolName == null || toolName.isEmpty()) {
+            return toResponse(errorJson("Missing required field 'tool'"), encoder);
+        }
+
+        JSONObject params = requestJson.optJSONObject("parameters");
+        if (params == null) {
+            params = new JSONObject();
+        }
+
+        JSONObject notReady = notReadyJson(toolName);
+        if (notReady != null) {
+            return toResponse(notReady, encoder);
+        }
 
-            JSONObject params = requestJson.optJSONObject("parameters");
-            if (params == null) {
-                params = new JSONObject();
+        if ("get_class_sources".equals(toolName) && params.optBoolean("stream", false)) {
+            return streamClassSources(params, encoder);
+        }
+        if (CACHEABLE_TOOLS.contains(toolName)) {
+            JSONObject toolParams = params;
+            return cachedResponse(toolName, params, encoder, () -> processInvokeRequest(toolName, toolParams));
+        }
+        return toResponse(processInvokeRequest(toolName, params), encoder);
+    }
+
+    /**
+     * Returns a retryable error if the tool needs more of the input than has been loaded so
+     * far, or {@code null} if it can run now.
+     */
+    private JSONObject notReadyJson(String toolName) {
+        // job tools and the profile never touch the input
+        if (JOB_TOOLS.contains(toolName) || "get_decompile_profile".equals(toolName)) {
+            return null;
+        }
+        boolean ready = INDEXED_TOOLS.contains(toolName) ? isDecompilerValid() : getDecompiler() != null;
+        return ready ? null : retryableJson("Jadx is still loading the input. Retry shortly.", 2);
+    }
+
+    /**
+     * Serves a response from the cache, or produces, caches and tags it. Each encoding is
+     * cached separately. Errors and smali fallbacks for slow classes are never cached.
+     */
+    private Response cachedResponse(String tool, JSONObject params, ResponseEncoder encoder, Supplier<JSONObject> producer) {
+        String key = responseCache.key(getDecompiler(), encoder.name() + ":" + tool, params);
+        ResponseCache.Entry entry = responseCache.get(key);
+        if (entry == null) {
+            long invalidations = responseCache.invalidations();
+            JSONObject json = producer.get();
+            if (json.has("error") || json.optBoolean("fallback", false)) {
+                return toResponse(json, encoder);
+            }
+            byte[] body = encoder.encode(json);
+            entry = responseCache.put(key, body, invalidations);
+            if (entry == null) {
+                // computed across a rename or reload, so it may carry old names
+                return new Response(body, encoder.contentType(), null, 0);
             }
+        }
+        return new Response(entry.body(), encoder.contentType(), entry.etag(), 0);
+    }
+
+    private Response toResponse(JSONObject json, ResponseEncoder encoder) {
+        int retryAfter = json.optBoolean("retryable", false) ? Math.max(1, json.optInt("retry_after", 1)) : 0;
+        return new Response(encoder.encode(json), encoder.contentType(), null, retryAfter);
+    }
+
+    /**
+     * Handles tool invocation from the client, routing to the correct handler.
+     *
+     * @param toolName Name of the tool to run
+     * @param params   Tool parameters
+     * @return JSON response object
+     */
+    private JSONObject processInvokeRequest(String toolName, JSONObject params) {
+        return processInvokeRequest(toolName, params, JobManager.JobContext.NONE);
+    }
 
+    /**
+     * Runs a tool, reporting progress and partial results of looping tools to {@code job}.
+     */
+    private JSONObject processInvokeRequest(String toolName, JSONObject params, JobManager.JobContext job) {
+        try {
             return switch (toolName) {
                 // 1) Manifest
                 case "get_android_manifest" -> handleGetAndroidManifest();
 
                 // 2) Discover classes
                 case "list_all_classes" -> handleListAllClasses(params);
+                case "list_packages" -> handleListPackages(params);
 
                 // 3) Search classes
                 case "search_class_by_name" -> handleSearchClassByName(params);
+                case "search_symbols" -> handleSearchSymbols(params);
 
                 // 4) Inspect a class
                 case "get_class_source" -> handleGetClassSource(params);
                 case "get_methods_of_class" -> handleGetMethodsOfClass(params);
                 case "get_fields_of_class" -> handleGetFieldsOfClass(params);
+                case "get_class_sources" -> handleGetClassSources(params, job);
+                case "get_class_outline" -> handleGetClassOutline(params);
+                case "get_package_outline" -> handleGetPackageOutline(params);
+                case "get_class_smali" -> handleGetClassSmali(params);
 
                 // 5) Search methods
-                case "search_method_by_name" -> handleSearchMethodByName(params);
+                case "search_method_by_name" -> handleSearchMethodByName(params, job);
 
                 // 6) Inspect a specific method
                 case "get_method_code" -> handleGetMethodCode(params);
+                case "get_method_smali" -> handleGetMethodSmali(params);
 
                 // 7) Resources
                 case "get_all_resource_file_names" -> handleGetAllResourceFileNames(params);
@@ -296,10 +789,31 @@ public class McpPlugin implements JadxPlugin {
                 case "get_method_xrefs" -> handleGetMethodXrefs(params);
                 case "get_field_xrefs" -> handleGetFieldXrefs(params);
 
+                // 9) String constants
+                case "search_strings" -> handleSearchStrings(params);
+
+                // 10) API usages
+                case "scan_api_usages" -> handleScanApiUsages(params, job);
+
+                // 11) Jobs
+                case "submit_job" -> handleSubmitJob(params);
+                case "get_job_status" -> handleGetJobStatus(params);
+                case "get_job_result" -> handleGetJobResult(params);
+                case "cancel_job" -> handleCancelJob(params);
+                case "list_jobs" -> new JSONObject().put("jobs", jobManager.list());
+
+                // 12) Profiling
+                case "get_decompile_profile" -> handleGetDecompileProfile(params);
+
+                // 13) Release diff
+                case "save_fingerprints" -> handleSaveFingerprints(params);
+                case "diff_against" -> handleDiffAgainst(params);
+
+                // 14) Export
+                case "export_archive" -> handleExportArchive(params, job);
+
                 default -> errorJson("Unknown tool: " + toolName);
             };
-        } catch (JSONException e) {
-            return errorJson("Invalid JSON in request body: " + e.getMessage());
         } catch (Exception e) {
             return errorJson("Unexpected error while processing request: " + e.getMessage());
         }
@@ -325,16 +839,74 @@ public class McpPlugin implements JadxPlugin {
                         .put("offset", "int")
                         .put("limit", "int")));
 
+        tools.put(new JSONObject()
+                .put("name", "list_packages")
+                .put("description", "Lists the direct sub-packages of 'package' (default: top level) with class counts, "
+                        + "optionally filtered by a name 'prefix'. Set 'class_limit' to also list the package's own classes. "
+                        + "Expand one level per call instead of paging through list_all_classes.")
+                .put("parameters", new JSONObject()
+                        .put("package", "string")
+                        .put("prefix", "string")
+                        .put("offset", "int")
+                        .put("limit", "int")
+                        .put("class_limit", "int")));
+
         // 3) Search classes
         tools.put(new JSONObject()
                 .put("name", "search_class_by_name")
                 .put("description", "Search class names containing a keyword.")
                 .put("parameters", new JSONObject().put("query", "string")));
+        tools.put(new JSONObject()
+                .put("name", "search_symbols")
+                .put("description", "Search class, method and field names with a glob (default; '*' matches any text "
+                        + "including dots, '?' one character, whole name) or a regex (found anywhere unless anchored). "
+                        + "Class names are fully qualified, member names are simple. 'kinds' limits the search to "
+                        + "'class', 'method' and/or 'field'. Counts stop at 'max_hits'.")
+                .put("parameters", new JSONObject()
+                        .put("pattern", "string")
+                        .put("syntax", "string")
+                        .put("kinds", "array")
+                        .put("ignore_case", "boolean")
+                        .put("offset", "int")
+                        .put("limit", "int")
+                        .put("max_hits", "int")));
 
         // 4) Inspect a class
         tools.put(new JSONObject()
                 .put("name", "get_class_source")
-                .put("description", "Returns the decompiled source of a class.")
+                .put("description", "Returns the decompiled source of a class. If decompiling takes too long, returns smali "
+                        + "with 'fallback': true while decompilation finishes in the background.")
+                .put("parameters", new JSONObject().put("class_name", "string")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_class_sources")
+                .put("description", "Returns the decompiled sources of several classes, decompiled in parallel. Pass 'class_names' or a 'package' prefix. "
+                        + "Output stops at 'max_bytes'; continue from 'next_offset'. With 'stream', classes are sent as NDJSON lines as they complete.")
+                .put("parameters", new JSONObject()
+                        .put("class_names", "array")
+                        .put("package", "string")
+                        .put("offset", "int")
+                        .put("limit", "int")
+                        .put("max_bytes", "int")
+                        .put("stream", "boolean")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_class_outline")
+                .put("description", "Returns the shape of a class without decompiling it: kind, access flags, superclass, interfaces, "
+                        + "field types and method signatures, with inner classes nested.")
+                .put("parameters", new JSONObject().put("class_name", "string")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_package_outline")
+                .put("description", "Returns the outlines of all top-level classes in a package and its subpackages, sorted by name.")
+                .put("parameters", new JSONObject()
+                        .put("package", "string")
+                        .put("offset", "int")
+                        .put("limit", "int")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_class_smali")
+                .put("description", "Returns the smali disassembly of a class without decompiling it.")
                 .put("parameters", new JSONObject().put("class_name", "string")));
 
         tools.put(new JSONObject()
@@ -361,6 +933,13 @@ public class McpPlugin implements JadxPlugin {
                         .put("class_name", "string")
                         .put("method_name", "string")));
 
+        tools.put(new JSONObject()
+                .put("name", "get_method_smali")
+                .put("description", "Returns the smali disassembly of all overloads of a method without decompiling it.")
+                .put("parameters", new JSONObject()
+                        .put("class_name", "string")
+                        .put("method_name", "string")));
+
         // 7) Resources
         tools.put(new JSONObject()
                 .put("name", "get_all_resource_file_names")
@@ -394,9 +973,137 @@ public class McpPlugin implements JadxPlugin {
                         .put("class_name", "string")
                         .put("field_name", "string")));
 
+        // 9) String constants
+        tools.put(new JSONObject()
+                .put("name", "search_strings")
+                .put("description", "Search string constants (const-string and static field values) without decompiling. Mode is 'prefix', 'substring' or 'regex'.")
+                .put("parameters", new JSONObject()
+                        .put("query", "string")
+                        .put("mode", "string")
+                        .put("ignore_case", "boolean")
+                        .put("offset", "int")
+                        .put("limit", "int")));
+
+        // 10) API usages
+        tools.put(new JSONObject()
+                .put("name", "scan_api_usages")
+                .put("description", "Finds all callers of the given methods and accessors of the given fields in one pass over the bytecode. "
+                        + "Pass 'signatures' like 'javax.crypto.Cipher.getInstance' (optionally with a raw descriptor) and/or "
+                        + "'rule_pack': 'security'. With 'include_snippets', each caller gets the matching source line.")
+                .put("parameters", new JSONObject()
+                        .put("signatures", "array")
+                        .put("rule_pack", "string")
+                        .put("include_snippets", "boolean")
+                        .put("limit", "int")));
+
+        // 11) Jobs
+        tools.put(new JSONObject()
+                .put("name", "submit_job")
+                .put("description", "Runs any tool in the background and returns a job id. Use it for whole-APK tools that may outlast "
+                        + "the client timeout. Submitting the same call as a running job returns that job.")
+                .put("parameters", new JSONObject()
+                        .put("tool", "string")
+                        .put("parameters", "object")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_job_status")
+                .put("description", "Returns the state and progress of a job.")
+                .put("parameters", new JSONObject().put("job_id", "string")));
+
+        tools.put(new JSONObject()
+                .put("name", "get_job_result")
+                .put("description", "Returns the result of a finished job, or the partial results published so far, starting at 'offset'.")
+                .put("parameters", new JSONObject()
+                        .put("job_id", "string")
+                        .put("offset", "int")
+                        .put("limit", "int")));
+
+        tools.put(new JSONObject()
+                .put("name", "cancel_job")
+                .put("description", "Cancels a queued or running job.")
+                .put("parameters", new JSONObject().put("job_id", "string")));
+
+        tools.put(new JSONObject()
+                .put("name", "list_jobs")
+                .put("description", "Lists running and recently finished jobs.")
+                .put("parameters", new JSONObject()));
+
+        // 12) Profiling
+        tools.put(new JSONObject()
+                .put("name", "get_decompile_profile")
+                .put("description", "Reports which classes are the most expensive to decompile ('order': 'cost', by total wall time) "
+                        + "or the most requested by clients ('order': 'frequency', bulk tools and response cache hits not counted), with allocated bytes and source size. Classes served from Jadx's code cache add no decompile cost. "
+                        + "Without 'order', returns both lists. Pass 'format': 'csv' to get the rows as CSV.")
+                .put("parameters", new JSONObject()
+                        .put("order", "string")
+                        .put("limit", "int")
+                        .put("format", "string")));
+
+        // 13) Release diff
+        tools.put(new JSONObject()
+                .put("name", "save_fingerprints")
+                .put("description", "Saves bytecode hashes of every class and method of the loaded APK to a sidecar file "
+                        + "(default: next to the input, with a '.fingerprints' suffix), for later diff_against calls. "
+                        + "Paths are relative to the export directory and may not leave it.")
+                .put("parameters", new JSONObject().put("path", "string")));
+
+        tools.put(new JSONObject()
+                .put("name", "diff_against")
+                .put("description", "Compares the loaded APK with a fingerprint file saved from another release and lists added, "
+                        + "removed and modified classes, with the changed methods of each modified class. No decompilation needed. "
+                        + "The path is relative to the export directory and may not leave it.")
+                .put("parameters", new JSONObject()
+                        .put("path", "string")
+                        .put("limit", "int")));
+
+        // 14) Export
+        tools.put(new JSONObject()
+                .put("name", "export_archive")
+                .put("description", "Decompiles all classes in parallel into one compressed, indexed archive file for offline "
+                        + "processing (default: next to the input, with a '.jadxsrc' suffix). Paths are relative to the "
+                        + "export directory and may not leave it; an existing file is only replaced if it is an archive. "
+                        + "Start the plugin with the 'source-archive' option pointing at it to serve get_class_source from the archive. "
+                        + "Long-running on large APKs; run it with submit_job.")
+                .put("parameters", new JSONObject().put("path", "string")));
+
         return new JSONObject().put("tools", tools);
     }
 
+    /**
+     * Reports whether the input is loaded and how far each index has been built.
+     */
+    private JSONObject getReadyJson() {
+        boolean loaded = isDecompilerValid();
+        boolean allReady = loaded;
+        JSONObject indexesJson = new JSONObject();
+        for (BackgroundIndex<?> index : indexes) {
+            indexesJson.put(index.getName(), index.toJson());
+            allReady &= index.getState() == BackgroundIndex.State.READY;
+        }
+
+        JSONObject json = new JSONObject()
+                .put("ready", allReady)
+                .put("loaded", loaded)
+                .put("indexes", indexesJson);
+        if (loaded) {
+            json.put("classes", getDecompiler().getClassesWithInners().size());
+        }
+        return json;
+    }
+
+    /**
+     * Returns runtime counters of the server components.
+     */
+    private JSONObject getMetricsJson() {
+        return new JSONObject()
+                .put("decompile", decompileCoordinator.toJson())
+                .put("decompile_profile", decompileCoordinator.getProfiler().toJson())
+                .put("response_cache", responseCache.toJson())
+                .put("admission", admissionController.toJson())
+                .put("jobs", jobManager.toJson())
+                .put("events", eventStream.toJson());
+    }
+
     /**
      * Small helper to create a standard error JSON object.
      */
@@ -406,6 +1113,24 @@ public class McpPlugin implements JadxPlugin {
         return obj;
     }
 
+    /**
+     * Error for requests that cannot be served yet; sent as {@code 503} with {@code Retry-After}.
+     */
+    private JSONObject retryableJson(String message, int retryAfterSeconds) {
+        return errorJson(message)
+                .put("retryable", true)
+                .put("retry_after", retryAfterSeconds);
+    }
+
+    /**
+     * Retryable error for a tool whose index is still being built.
+     */
+    private JSONObject indexNotReadyJson(BackgroundIndex<?> index) {
+        return retryableJson("Index '" + index.getName() + "' is still being built. Retry shortly.",
+                index.estimateRetryAfterSeconds())
+                .put("index", index.toJson());
+    }
+
     /**
      * Retrieves the content of AndroidManifest.xml
      * <p>
@@ -415,7 +1140,7 @@ public class McpPlugin implements JadxPlugin {
      */
     private JSONObject handleGetAndroidManifest() {
         try {
-            for (ResourceFile resFile : context.getDecompiler().getResources()) {
+            for (ResourceFile resFile : getDecompiler().getResources()) {
                 if (resFile.getType() == ResourceType.MANIFEST) {
                     ResContainer container = resFile.loadContent();
                     if (container.getText() != null) {
@@ -447,70 +1172,414 @@ public class McpPlugin implements JadxPlugin {
             limit = maxLimit;
         }
 
-        List<JavaClass> allClasses = context.getDecompiler().getClassesWithInners();
-        int total = allClasses.size();
-
-        JSONArray array = new JSONArray();
-        for (int i = offset; i < Math.min(offset + limit, total); i++) {
-            JavaClass cls = allClasses.get(i);
-            array.put(cls.getFullName());
+        List<JavaClass> allClasses = getDecompiler().getClassesWithInners();
+        int total = allClasses.size();
+
+        JSONArray array = new JSONArray();
+        for (int i = offset; i < Math.min(offset + limit, total); i++) {
+            JavaClass cls = allClasses.get(i);
+            array.put(cls.getFullName());
+        }
+
+        return new JSONObject()
+                .put("total", total)
+                .put("offset", offset)
+                .put("limit", limit)
+                .put("classes", array);
+    }
+
+    /**
+     * Lists the sub-packages of one package with their class counts, so the package tree
+     * can be expanded one level at a time.
+     *
+     * @param params JSON with optional "package" (default: root), "prefix" (sub-package
+     *               name prefix), "offset"/"limit" and "class_limit" (own classes to list)
+     */
+    private JSONObject handleListPackages(JSONObject params) {
+        PackageTrie trie = packageIndex.get(getDecompiler());
+        if (trie == null) {
+            return indexNotReadyJson(packageIndex);
+        }
+
+        String pkg = params.optString("package", "");
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(Math.max(0, params.optInt("limit", 200)), 1000);
+        int classLimit = Math.min(Math.max(0, params.optInt("class_limit", 0)), 1000);
+        JSONObject json = trie.list(pkg, params.optString("prefix", ""), offset, limit, classLimit);
+        if (json == null) {
+            return errorJson("Package not found: " + pkg);
+        }
+        return json;
+    }
+
+    /**
+     * Search class names based on a partial query string and return matches.
+     *
+     * @param params JSON object with key "query"
+     * @return JSON object with array of matched class names under "results"
+     */
+    private JSONObject handleSearchClassByName(JSONObject params) {
+        String query = params.optString("query", "").toLowerCase();
+        JSONArray array = new JSONArray();
+
+        for (JavaClass cls : getDecompiler().getClassesWithInners()) {
+            String fullName = cls.getFullName();
+            if (fullName.toLowerCase().contains(query)) {
+                array.put(fullName);
+            }
+        }
+
+        return new JSONObject()
+                .put("query", query)
+                .put("results", array);
+    }
+
+    /**
+     * Searches class, method and field names in the symbol index with a glob or regex.
+     *
+     * @param params A JSON object containing "pattern", and optionally "syntax" ('glob' or
+     *               'regex'), "kinds", "ignore_case", "offset", "limit" and "max_hits".
+     */
+    private JSONObject handleSearchSymbols(JSONObject params) {
+        String pattern = params.optString("pattern", null);
+        if (pattern == null || pattern.isEmpty()) {
+            return errorJson("Missing required parameter 'pattern'");
+        }
+        String syntax = params.optString("syntax", "glob");
+        if (!"glob".equals(syntax) && !"regex".equals(syntax)) {
+            return errorJson("Invalid syntax: " + syntax + ". Expected 'glob' or 'regex'.");
+        }
+
+        Set<SymbolTable.Kind> kinds = EnumSet.allOf(SymbolTable.Kind.class);
+        JSONArray kindsJson = params.optJSONArray("kinds");
+        if (kindsJson != null && !kindsJson.isEmpty()) {
+            kinds.clear();
+            for (int i = 0; i < kindsJson.length(); i++) {
+                try {
+                    kinds.add(SymbolTable.Kind.valueOf(kindsJson.optString(i, "").toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    return errorJson("Invalid kind: " + kindsJson.optString(i) + ". Expected 'class', 'method' or 'field'.");
+                }
+            }
+        }
+
+        boolean ignoreCase = params.optBoolean("ignore_case", false);
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(params.optInt("limit", 100), 1000);
+        int maxHits = Math.max(1, Math.min(params.optInt("max_hits", 10_000), 100_000));
+
+        SymbolTable symbols = symbolIndex.getLatest(getDecompiler());
+        if (symbols == null) {
+            return indexNotReadyJson(symbolIndex);
+        }
+
+        try {
+            NamePattern compiled = "regex".equals(syntax)
+                    ? NamePattern.regex(pattern, ignoreCase)
+                    : NamePattern.glob(pattern, ignoreCase);
+            return symbols.search(compiled, kinds, offset, limit, maxHits)
+                    .put("pattern", pattern)
+                    .put("syntax", syntax);
+        } catch (PatternSyntaxException e) {
+            return errorJson("Invalid regex: " + e.getMessage());
+        } catch (Exception e) {
+            return errorJson("Error searching symbols: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves the full decompiled source code of a specific Java class.
+     *
+     * @param params A JSON object containing the required parameter:
+     *               - "class_name": The fully qualified name of the class to
+     *               retrieve.
+     */
+    private JSONObject handleGetClassSource(JSONObject params) {
+        String className = params.optString("class_name", null);
+        if (className == null || className.isEmpty()) {
+            return errorJson("Missing required parameter 'class_name'");
+        }
+
+        try {
+            for (JavaClass cls : getDecompiler().getClasses()) {
+                if (cls.getFullName().equals(className)) {
+                    String code = archivedSource(cls);
+                    try {
+                        if (code == null) {
+                            code = decompileCoordinator.getCode(cls, pluginOptions.getDecompileBudgetMs(), true);
+                        }
+                    } catch (TimeoutException e) {
+                        return new JSONObject()
+                                .put("class_name", className)
+                                .put("smali", SmaliDisassembler.disassembleClass(cls.getClassNode()))
+                                .put("fallback", true)
+                                .put("message", "Decompilation takes longer than " + pluginOptions.getDecompileBudgetMs()
+                                        + " ms and continues in the background; retry later for Java source.");
+                    }
+                    return new JSONObject()
+                            .put("class_name", className)
+                            .put("source", code);
+                }
+            }
+            return errorJson("Class not found: " + className);
+        } catch (Exception e) {
+            return errorJson("Error fetching class: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the source of a top-level class from the configured source archive, or
+     * {@code null} if there is none, it was made from another input, or it lacks the class.
+     */
+    private String archivedSource(JavaClass cls) {
+        SourceArchive archive = sourceArchive();
+        if (archive == null || staleArchivedClasses.contains(cls.getRawName())) {
+            return null;
+        }
+        try {
+            return archive.get(cls.getFullName());
+        } catch (IOException e) {
+            System.err.println("[MCP] Error reading source archive: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the archive named by the {@code source-archive} option once per loaded input.
+     */
+    private synchronized SourceArchive sourceArchive() {
+        JadxDecompiler decompiler = getDecompiler();
+        if (archiveOwner == decompiler) {
+            return sourceArchive;
+        }
+        closeSourceArchive();
+        archiveOwner = decompiler;
+        String path = pluginOptions.getSourceArchive();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        try {
+            SourceArchive archive = SourceArchive.open(Path.of(path));
+            if (!archive.getInputId().equals(archiveInputId(decompiler))) {
+                System.err.println("[MCP] Ignoring source archive made from another input: " + path);
+                archive.close();
+                return null;
+            }
+            sourceArchive = archive;
+            System.out.println("[MCP] Serving " + archive.size() + " class sources from " + path);
+        } catch (IOException e) {
+            System.err.println("[MCP] Cannot open source archive " + path + ": " + e.getMessage());
+        }
+        return sourceArchive;
+    }
+
+    private synchronized void closeSourceArchive() {
+        if (sourceArchive != null) {
+            try {
+                sourceArchive.close();
+            } catch (IOException ignored) {
+            }
+            sourceArchive = null;
+        }
+        archiveOwner = null;
+    }
+
+    /**
+     * Identifies the loaded input by its file names, sizes and class count.
+     */
+    private static String archiveInputId(JadxDecompiler decompiler) {
+        StringBuilder id = new StringBuilder();
+        for (File file : decompiler.getArgs().getInputFiles()) {
+            id.append(file.getName()).append(':').append(file.length()).append(';');
+        }
+        return id.append(decompiler.getClasses().size()).toString();
+    }
+
+    /**
+     * Decompiles every top-level class into a source archive.
+     *
+     * @param params JSON with optional "path" inside the export directory; defaults to the
+     *               first input file name plus ".jadxsrc"
+     */
+    private JSONObject handleExportArchive(JSONObject params, JobManager.JobContext job) {
+        long start = System.currentTimeMillis();
+        try {
+            Path path = resolveClientPath(params.optString("path", ""), ".jadxsrc");
+            // the GUI shows the same class nodes, so only a headless export unloads them
+            boolean unload = context == null || context.getGuiContext() == null;
+            JSONObject json = SourceArchive.write(path, archiveInputId(getDecompiler()),
+                    getDecompiler().getClasses(), decompileCoordinator, unload, job);
+            String configured = pluginOptions.getSourceArchive();
+            if (configured != null && !configured.isEmpty() && Path.of(configured).toAbsolutePath().equals(path)) {
+                closeSourceArchive();
+            }
+            return json.put("elapsed_ms", System.currentTimeMillis() - start);
+        } catch (IllegalArgumentException e) {
+            return errorJson(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorJson("Export cancelled");
+        } catch (IOException e) {
+            return errorJson("Error writing archive: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decompiles several classes in parallel and returns their sources in a stable order.
+     *
+     * @param params A JSON object containing either:
+     *               - "class_names": Fully qualified class names; inner classes resolve to their top-level class.
+     *               - "package": Package prefix; all top-level classes below it, sorted by name.
+     *               and optionally "offset", "limit" and "max_bytes".
+     */
+    private JSONObject handleGetClassSources(JSONObject params, JobManager.JobContext job) {
+        try {
+            JSONArray classes = new JSONArray();
+            ClassSourceBatch batch = classSourceBatch(params);
+            job.setTotal(batch.size());
+            JSONObject summary = batch.run(entry -> {
+                classes.put(entry);
+                job.addPartial(entry);
+                job.advance();
+            });
+            return summary.put("classes", classes);
+        } catch (IllegalArgumentException e) {
+            return errorJson(e.getMessage());
+        } catch (Exception e) {
+            return errorJson("Error fetching classes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streaming variant of {@code get_class_sources}: one JSON line per class as soon as it is
+     * ready, followed by a summary line with {@code "done": true}.
+     */
+    private Response streamClassSources(JSONObject params, ResponseEncoder encoder) {
+        ClassSourceBatch batch;
+        try {
+            batch = classSourceBatch(params);
+        } catch (IllegalArgumentException e) {
+            return toResponse(errorJson(e.getMessage()), encoder);
         }
-
-        return new JSONObject()
-                .put("total", total)
-                .put("offset", offset)
-                .put("limit", limit)
-                .put("classes", array);
+        return new Response(null, "application/x-ndjson", null, 0, out -> {
+            try {
+                JSONObject summary = batch.run(entry -> {
+                    try {
+                        out.write((entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.write((summary.put("done", true).toString() + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
     }
 
     /**
-     * Search class names based on a partial query string and return matches.
+     * Resolves the classes requested from {@code get_class_sources}.
      *
-     * @param params JSON object with key "query"
-     * @return JSON object with array of matched class names under "results"
+     * @throws IllegalArgumentException if the parameters are missing or name unknown classes
      */
-    private JSONObject handleSearchClassByName(JSONObject params) {
-        String query = params.optString("query", "").toLowerCase();
-        JSONArray array = new JSONArray();
-
-        for (JavaClass cls : context.getDecompiler().getClassesWithInners()) {
-            String fullName = cls.getFullName();
-            if (fullName.toLowerCase().contains(query)) {
-                array.put(fullName);
+    private ClassSourceBatch classSourceBatch(JSONObject params) {
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(params.optInt("limit", 100), 500);
+        long maxBytes = Math.min(params.optLong("max_bytes", 1024 * 1024), 16L * 1024 * 1024);
+
+        List<JavaClass> selected = new ArrayList<>();
+        JSONArray names = params.optJSONArray("class_names");
+        String pkg = params.optString("package", "");
+        if (names != null && !names.isEmpty()) {
+            Map<String, JavaClass> byName = new HashMap<>();
+            for (JavaClass cls : getDecompiler().getClassesWithInners()) {
+                byName.put(cls.getFullName(), cls);
+            }
+            Set<JavaClass> seen = new HashSet<>();
+            for (int i = 0; i < names.length(); i++) {
+                String name = names.optString(i, "");
+                JavaClass cls = byName.get(name);
+                if (cls == null) {
+                    throw new IllegalArgumentException("Class not found: " + name);
+                }
+                JavaClass top = cls.getTopParentClass();
+                if (seen.add(top)) {
+                    selected.add(top);
+                }
             }
+        } else if (!pkg.isEmpty()) {
+            String prefix = pkg.endsWith(".") ? pkg : pkg + ".";
+            for (JavaClass cls : getDecompiler().getClasses()) {
+                if (cls.getFullName().startsWith(prefix)) {
+                    selected.add(cls);
+                }
+            }
+            selected.sort(Comparator.comparing(JavaClass::getFullName));
+            if (selected.isEmpty()) {
+                throw new IllegalArgumentException("No classes found in package: " + pkg);
+            }
+        } else {
+            throw new IllegalArgumentException("Missing required parameter 'class_names' or 'package'");
         }
 
-        return new JSONObject()
-                .put("query", query)
-                .put("results", array);
+        int from = Math.min(offset, selected.size());
+        int to = Math.min(from + Math.max(1, limit), selected.size());
+        return new ClassSourceBatch(decompileCoordinator, selected.subList(from, to), from, selected.size(), maxBytes);
     }
 
     /**
-     * Retrieves the full decompiled source code of a specific Java class.
+     * Returns the outline of a class, built from load-time metadata only.
      *
      * @param params A JSON object containing the required parameter:
-     *               - "class_name": The fully qualified name of the class to
-     *               retrieve.
+     *               - "class_name": The fully qualified name of the class (inner classes allowed).
      */
-    private JSONObject handleGetClassSource(JSONObject params) {
+    private JSONObject handleGetClassOutline(JSONObject params) {
         String className = params.optString("class_name", null);
         if (className == null || className.isEmpty()) {
             return errorJson("Missing required parameter 'class_name'");
         }
 
-        try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
-                if (cls.getFullName().equals(className)) {
-                    String code = cls.getCode();
-                    return new JSONObject()
-                            .put("class_name", className)
-                            .put("source", code);
-                }
-            }
+        ClassNode cls = getDecompiler().getRoot().searchClassByFullAlias(className);
+        if (cls == null) {
             return errorJson("Class not found: " + className);
-        } catch (Exception e) {
-            return errorJson("Error fetching class: " + e.getMessage());
         }
+        return ClassOutline.of(cls);
+    }
+
+    /**
+     * Returns the outlines of the top-level classes below a package, with pagination.
+     *
+     * @param params JSON with required "package" and optional offset and limit
+     */
+    private JSONObject handleGetPackageOutline(JSONObject params) {
+        String pkg = params.optString("package", "");
+        if (pkg.isEmpty()) {
+            return errorJson("Missing required parameter 'package'");
+        }
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(params.optInt("limit", 100), 500);
+
+        String prefix = pkg.endsWith(".") ? pkg : pkg + ".";
+        List<ClassNode> selected = new ArrayList<>();
+        for (ClassNode cls : getDecompiler().getRoot().getClasses()) {
+            if (!cls.isInner() && cls.getFullName().startsWith(prefix)) {
+                selected.add(cls);
+            }
+        }
+        selected.sort(Comparator.comparing(ClassNode::getFullName));
+
+        JSONArray classes = new JSONArray();
+        for (int i = offset; i < Math.min(offset + limit, selected.size()); i++) {
+            classes.put(ClassOutline.of(selected.get(i)));
+        }
+        return new JSONObject()
+                .put("package", pkg)
+                .put("total", selected.size())
+                .put("offset", offset)
+                .put("limit", limit)
+                .put("classes", classes);
     }
 
     /**
@@ -526,7 +1595,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
                     JSONArray array = new JSONArray();
                     for (JavaMethod method : cls.getMethods()) {
@@ -556,7 +1625,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
                     JSONArray array = new JSONArray();
                     for (JavaField field : cls.getFields()) {
@@ -574,31 +1643,32 @@ public class McpPlugin implements JadxPlugin {
     }
 
     /**
-     * Searches all decompiled classes for methods whose names match or contain the
-     * provided string.
+     * Searches all classes for methods whose names match or contain the provided string.
+     * Uses the symbol index when it is up to date; before it is built, or while it is being
+     * rebuilt after a rename, every class is decompiled and scanned instead.
+     *
+     * <p>Either way, lists what {@link JavaClass#getMethods()} of the top-level classes
+     * returns, which leaves out methods Jadx does not generate. That is only known after
+     * decompiling, so an index hit is kept only if its decompiled class lists the method.</p>
      *
      * @param params A JSON object containing the required parameter:
      *               - "method_name": A case-insensitive string to match method
      *               names.
      */
-    private JSONObject handleSearchMethodByName(JSONObject params) {
+    private JSONObject handleSearchMethodByName(JSONObject params, JobManager.JobContext job) {
         String methodName = params.optString("method_name", null);
         if (methodName == null || methodName.isEmpty()) {
             return errorJson("Missing required parameter 'method_name'");
         }
 
         try {
-            JSONArray results = new JSONArray();
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
-                cls.decompile();
-                for (JavaMethod method : cls.getMethods()) {
-                    if (method.getName().toLowerCase().contains(methodName.toLowerCase())) {
-                        JSONObject entry = new JSONObject()
-                                .put("class_name", cls.getFullName())
-                                .put("method_name", method.getName());
-                        results.put(entry);
-                    }
-                }
+            String needle = methodName.toLowerCase();
+            SymbolTable symbols = symbolIndex.get(getDecompiler());
+            JSONArray results = symbols != null
+                    ? searchMethodsInIndex(symbols, needle, job)
+                    : searchMethodsInClasses(needle, job);
+            if (results == null) {
+                return errorJson("Cancelled");
             }
 
             JSONObject response = new JSONObject()
@@ -615,6 +1685,67 @@ public class McpPlugin implements JadxPlugin {
         }
     }
 
+    /**
+     * Looks up methods by name in the symbol index.
+     *
+     * @return the matches, or {@code null} if the job was cancelled
+     */
+    private JSONArray searchMethodsInIndex(SymbolTable symbols, String needle, JobManager.JobContext job) throws Exception {
+        int[] methods = Arrays.stream(symbols.matchNames(name -> name.toLowerCase().contains(needle)))
+                .flatMap(nameId -> Arrays.stream(symbols.symbolsNamed(nameId)))
+                .filter(symbol -> symbols.kind(symbol) == SymbolTable.Kind.METHOD && !symbols.classOf(symbol).isInner())
+                .sorted()
+                .toArray();
+
+        job.setTotal(methods.length);
+        JSONArray results = new JSONArray();
+        for (int symbol : methods) {
+            if (job.isCancelled()) {
+                return null;
+            }
+            JavaClass cls = symbols.classOf(symbol).getJavaNode();
+            MethodNode mth = symbols.method(symbol);
+            decompileCoordinator.getCode(cls, 0, false);
+            if (cls.getMethods().stream().anyMatch(method -> method.getMethodNode() == mth)) {
+                JSONObject entry = new JSONObject()
+                        .put("class_name", cls.getFullName())
+                        .put("method_name", symbols.name(symbols.nameOf(symbol)));
+                results.put(entry);
+                job.addPartial(entry);
+            }
+            job.advance();
+        }
+        return results;
+    }
+
+    /**
+     * Decompiles every class and matches the names of its methods.
+     *
+     * @return the matches, or {@code null} if the job was cancelled
+     */
+    private JSONArray searchMethodsInClasses(String needle, JobManager.JobContext job) throws Exception {
+        JSONArray results = new JSONArray();
+        List<JavaClass> classes = getDecompiler().getClasses();
+        job.setTotal(classes.size());
+        for (JavaClass cls : classes) {
+            if (job.isCancelled()) {
+                return null;
+            }
+            decompileCoordinator.getCode(cls, 0, false);
+            for (JavaMethod method : cls.getMethods()) {
+                if (method.getName().toLowerCase().contains(needle)) {
+                    JSONObject entry = new JSONObject()
+                            .put("class_name", cls.getFullName())
+                            .put("method_name", method.getName());
+                    results.put(entry);
+                    job.addPartial(entry);
+                }
+            }
+            job.advance();
+        }
+        return results;
+    }
+
     /**
      * Extracts the decompiled source code of a specific method within a given class.
      *
@@ -634,14 +1765,29 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
-                    cls.decompile();
+                    String classCode;
+                    try {
+                        classCode = decompileCoordinator.getCode(cls, pluginOptions.getDecompileBudgetMs(), true);
+                    } catch (TimeoutException e) {
+                        JSONObject json = methodSmaliJson(cls.getClassNode(), methodName);
+                        if (json.has("error")) {
+                            return json;
+                        }
+                        return json
+                                .put("fallback", true)
+                                .put("message", "Decompilation takes longer than " + pluginOptions.getDecompileBudgetMs()
+                                        + " ms and continues in the background; retry later for Java code.");
+                    }
                     for (JavaMethod method : cls.getMethods()) {
                         if (method.getName().equals(methodName)) {
                             String methodCode = method.getCodeStr();
+                            if (methodCode != null && methodCode.contains(DECOMPILE_FAILED_MARKER)) {
+                                return methodSmaliJson(cls.getClassNode(), methodName)
+                                        .put("code", methodCode);
+                            }
                             if (methodCode == null || methodCode.trim().isEmpty()) {
-                                String classCode = cls.getCode();
                                 String extracted = MethodExtractor.extract(method, classCode);
                                 if (extracted != null && !extracted.trim().isEmpty()) {
                                     return new JSONObject()
@@ -665,6 +1811,75 @@ public class McpPlugin implements JadxPlugin {
         }
     }
 
+    /**
+     * Returns the smali of a class, resolved by full name (inner classes allowed).
+     *
+     * @param params A JSON object containing the required parameter:
+     *               - "class_name": The fully qualified name of the class.
+     */
+    private JSONObject handleGetClassSmali(JSONObject params) {
+        String className = params.optString("class_name", null);
+        if (className == null || className.isEmpty()) {
+            return errorJson("Missing required parameter 'class_name'");
+        }
+
+        ClassNode cls = getDecompiler().getRoot().searchClassByFullAlias(className);
+        if (cls == null) {
+            return errorJson("Class not found: " + className);
+        }
+        try {
+            return new JSONObject()
+                    .put("class_name", className)
+                    .put("smali", SmaliDisassembler.disassembleClass(cls));
+        } catch (Exception e) {
+            return errorJson("Error disassembling class: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the smali of all overloads of a method.
+     *
+     * @param params A JSON object containing:
+     *               - "class_name": The fully qualified name of the class.
+     *               - "method_name": The name of the method.
+     */
+    private JSONObject handleGetMethodSmali(JSONObject params) {
+        String className = params.optString("class_name", null);
+        String methodName = params.optString("method_name", null);
+
+        if (className == null || className.isEmpty()) {
+            return errorJson("Missing required parameter 'class_name'");
+        }
+        if (methodName == null || methodName.isEmpty()) {
+            return errorJson("Missing required parameter 'method_name'");
+        }
+
+        ClassNode cls = getDecompiler().getRoot().searchClassByFullAlias(className);
+        if (cls == null) {
+            return errorJson("Class '" + className + "' not found");
+        }
+        return methodSmaliJson(cls, methodName);
+    }
+
+    private JSONObject methodSmaliJson(ClassNode cls, String methodName) {
+        try {
+            Map<String, String> smali = SmaliDisassembler.disassembleMethods(cls, methodName);
+            if (smali.isEmpty()) {
+                return errorJson("Method '" + methodName + "' not found in class '" + cls.getFullName() + "'");
+            }
+            JSONArray methods = new JSONArray();
+            smali.forEach((shortId, code) -> methods.put(new JSONObject()
+                    .put("short_id", shortId)
+                    .put("smali", code != null ? code : "")));
+            return new JSONObject()
+                    .put("class_name", cls.getFullName())
+                    .put("method_name", methodName)
+                    .put("methods", methods);
+        } catch (Exception e) {
+            return errorJson("Error disassembling method: " + e.getMessage());
+        }
+    }
+
     /**
      * Retrieves a list of all resource file names in the APK.
      */
@@ -677,7 +1892,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            List<ResourceFile> resources = context.getDecompiler().getResources();
+            List<ResourceFile> resources = getDecompiler().getResources();
             int total = resources.size();
 
             JSONArray array = new JSONArray();
@@ -709,7 +1924,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (ResourceFile resFile : context.getDecompiler().getResources()) {
+            for (ResourceFile resFile : getDecompiler().getResources()) {
                 if (resourceName.equals(resFile.getOriginalName())) {
                     ResContainer container = resFile.loadContent();
                     String contentStr = null;
@@ -765,7 +1980,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
                     JSONArray array = new JSONArray();
                     for (JavaNode node : cls.getUseIn()) {
@@ -805,7 +2020,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
                     for (JavaMethod method : cls.getMethods()) {
                         if (method.getName().equals(methodName)) {
@@ -851,7 +2066,7 @@ public class McpPlugin implements JadxPlugin {
         }
 
         try {
-            for (JavaClass cls : context.getDecompiler().getClasses()) {
+            for (JavaClass cls : getDecompiler().getClasses()) {
                 if (cls.getFullName().equals(className)) {
                     for (JavaField field : cls.getFields()) {
                         if (field.getName().equals(fieldName)) {
@@ -878,4 +2093,360 @@ public class McpPlugin implements JadxPlugin {
         }
     }
 
+    /**
+     * Searches string constants of the loaded APK using the string index.
+     *
+     * @param params A JSON object containing:
+     *               - "query": The prefix, substring or regex to match.
+     *               - "mode": Optional, one of "prefix", "substring" (default) or "regex".
+     *               - "ignore_case": Optional, case-insensitive matching.
+     *               - "offset" / "limit": Optional pagination of hits.
+     */
+    private JSONObject handleSearchStrings(JSONObject params) {
+        String query = params.optString("query", null);
+        if (query == null || query.isEmpty()) {
+            return errorJson("Missing required parameter 'query'");
+        }
+
+        StringIndex.Mode mode;
+        try {
+            mode = StringIndex.Mode.valueOf(params.optString("mode", "substring").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return errorJson("Invalid mode: " + params.optString("mode") + ". Expected 'prefix', 'substring' or 'regex'.");
+        }
+
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(params.optInt("limit", 100), 1000);
+
+        StringIndex index = stringIndex.get(getDecompiler());
+        if (index == null) {
+            return indexNotReadyJson(stringIndex);
+        }
+
+        try {
+            return index.search(query, mode, params.optBoolean("ignore_case", false), offset, limit);
+        } catch (PatternSyntaxException e) {
+            return errorJson("Invalid regex: " + e.getMessage());
+        } catch (Exception e) {
+            return errorJson("Error searching strings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the callers of a set of framework or app APIs in one parallel bytecode scan.
+     *
+     * @param params A JSON object containing "signatures" and/or "rule_pack", and optionally
+     *               "include_snippets" and "limit" (callers returned per target).
+     */
+    private JSONObject handleScanApiUsages(JSONObject params, JobManager.JobContext job) {
+        List<ApiUsageScanner.Target> targets = new ArrayList<>();
+        try {
+            JSONArray signatures = params.optJSONArray("signatures");
+            if (signatures != null) {
+                for (int i = 0; i < signatures.length(); i++) {
+                    targets.add(ApiUsageScanner.parse(signatures.optString(i, ""), null));
+                }
+            }
+            String rulePack = params.optString("rule_pack", "");
+            if (!rulePack.isEmpty()) {
+                targets.addAll(ApiUsageScanner.ruleTargets(rulePack));
+            }
+        } catch (IllegalArgumentException e) {
+            return errorJson(e.getMessage());
+        }
+        if (targets.isEmpty()) {
+            return errorJson("Missing required parameter 'signatures' or 'rule_pack'");
+        }
+
+        boolean includeSnippets = params.optBoolean("include_snippets", false);
+        int limit = Math.min(params.optInt("limit", 100), 1000);
+
+        try {
+            long start = System.currentTimeMillis();
+            List<ClassNode> classes = getDecompiler().getRoot().getClasses();
+            ApiUsageScanner scanner = new ApiUsageScanner(getDecompiler().getRoot(), targets);
+            List<ApiUsageScanner.Usages> usages = scanner.scan(classes, targets, job);
+            long scanMillis = System.currentTimeMillis() - start;
+            if (job.isCancelled()) {
+                return errorJson("Cancelled");
+            }
+
+            if (includeSnippets) {
+                // start decompiling all classes needed for snippets before waiting on the first one
+                for (ApiUsageScanner.Usages usage : usages) {
+                    for (ApiUsageScanner.Caller caller : usage.callers().subList(0, Math.min(limit, usage.callers().size()))) {
+                        decompileCoordinator.submit(caller.cls().getTopParentClass().getJavaNode());
+                    }
+                }
+            }
+
+            int totalHits = 0;
+            JSONArray results = new JSONArray();
+            JSONArray withoutHits = new JSONArray();
+            for (ApiUsageScanner.Usages usage : usages) {
+                ApiUsageScanner.Target target = usage.target();
+                if (usage.total() == 0) {
+                    withoutHits.put(target.signature());
+                    continue;
+                }
+                totalHits += usage.total();
+
+                JSONArray callers = new JSONArray();
+                for (ApiUsageScanner.Caller caller : usage.callers().subList(0, Math.min(limit, usage.callers().size()))) {
+                    MethodNode mth = caller.cls().searchMethodByShortId(caller.methodShortId());
+                    JSONObject entry = new JSONObject()
+                            .put("class_name", caller.cls().getFullName())
+                            .put("method_name", mth != null ? mth.getAlias() : caller.methodShortId())
+                            .put("count", caller.count());
+                    if (includeSnippets && mth != null) {
+                        String snippet = usageSnippet(mth, target);
+                        if (snippet != null) {
+                            entry.put("snippet", snippet);
+                        }
+                    }
+                    callers.put(entry);
+                }
+
+                JSONObject result = new JSONObject()
+                        .put("signature", target.signature())
+                        .put("total", usage.total())
+                        .put("callers", callers);
+                if (target.rule() != null) {
+                    result.put("rule", target.rule());
+                }
+                results.put(result);
+            }
+
+            return new JSONObject()
+                    .put("classes_scanned", classes.size())
+                    .put("scan_ms", scanMillis)
+                    .put("total_hits", totalHits)
+                    .put("results", results)
+                    .put("targets_without_hits", withoutHits);
+        } catch (Exception e) {
+            return errorJson("Error scanning API usages: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a tool call as a background job.
+     *
+     * @param params A JSON object containing "tool" and optionally its "parameters".
+     */
+    private JSONObject handleSubmitJob(JSONObject params) {
+        String tool = params.optString("tool", "");
+        if (tool.isEmpty()) {
+            return errorJson("Missing required parameter 'tool'");
+        }
+        if (JOB_TOOLS.contains(tool)) {
+            return errorJson("Tool cannot run as a job: " + tool);
+        }
+        JSONObject toolParams = params.optJSONObject("parameters");
+        if (toolParams == null) {
+            toolParams = new JSONObject();
+        }
+
+        JSONObject notReady = notReadyJson(tool);
+        if (notReady != null) {
+            return notReady;
+        }
+
+        JSONObject jobParams = toolParams;
+        try {
+            JobManager.Submission submission = jobManager.submit(tool, toolParams,
+                    job -> processInvokeRequest(tool, jobParams, job));
+            return submission.job().statusJson()
+                    .put("deduplicated", submission.deduplicated());
+        } catch (RejectedExecutionException e) {
+            return retryableJson("Too many jobs queued. Retry shortly.", jobManager.estimateRetryAfterSeconds());
+        }
+    }
+
+    private JSONObject handleGetJobStatus(JSONObject params) {
+        JobManager.Job job = jobManager.get(params.optString("job_id", ""));
+        if (job == null) {
+            return errorJson("Job not found: " + params.optString("job_id", ""));
+        }
+        return job.statusJson();
+    }
+
+    private JSONObject handleGetJobResult(JSONObject params) {
+        JobManager.Job job = jobManager.get(params.optString("job_id", ""));
+        if (job == null) {
+            return errorJson("Job not found: " + params.optString("job_id", ""));
+        }
+        int offset = Math.max(0, params.optInt("offset", 0));
+        int limit = Math.min(params.optInt("limit", 100), 1000);
+        return job.resultJson(offset, limit);
+    }
+
+    private JSONObject handleCancelJob(JSONObject params) {
+        String jobId = params.optString("job_id", "");
+        boolean cancelled = jobManager.cancel(jobId);
+        JobManager.Job job = jobManager.get(jobId);
+        if (job == null) {
+            return errorJson("Job not found: " + jobId);
+        }
+        return job.statusJson().put("cancelled", cancelled);
+    }
+
+    /**
+     * Returns the decompile profile sorted by cost and/or access count, as JSON or CSV.
+     * A limit of 0 returns every tracked class.
+     */
+    private JSONObject handleGetDecompileProfile(JSONObject params) {
+        String orderParam = params.optString("order", "");
+        List<DecompileProfiler.Order> orders = new ArrayList<>();
+        if (orderParam.isEmpty()) {
+            orders.add(DecompileProfiler.Order.COST);
+            orders.add(DecompileProfiler.Order.FREQUENCY);
+        } else {
+            try {
+                orders.add(DecompileProfiler.Order.valueOf(orderParam.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return errorJson("Unknown order: " + orderParam + " (expected 'cost' or 'frequency')");
+            }
+        }
+        String format = params.optString("format", "json");
+        if (!format.equals("json") && !format.equals("csv")) {
+            return errorJson("Unknown format: " + format + " (expected 'json' or 'csv')");
+        }
+        int limit = Math.max(0, params.optInt("limit", 20));
+
+        DecompileProfiler profiler = decompileCoordinator.getProfiler();
+        JSONObject json = profiler.toJson().put("format", format);
+        for (DecompileProfiler.Order order : orders) {
+            String key = "by_" + order.name().toLowerCase();
+            json.put(key, format.equals("csv") ? profiler.toCsv(order, limit) : profiler.top(order, limit));
+        }
+        return json;
+    }
+
+    /**
+     * Writes the fingerprints of the loaded APK to a sidecar file.
+     *
+     * @param params JSON with optional "path"; defaults to the first input file plus ".fingerprints"
+     */
+    private JSONObject handleSaveFingerprints(JSONObject params) {
+        ClassFingerprints fingerprints = fingerprintIndex.get(getDecompiler());
+        if (fingerprints == null) {
+            return indexNotReadyJson(fingerprintIndex);
+        }
+
+        try {
+            Path path = resolveClientPath(params.optString("path", ""), ".fingerprints");
+            long size = fingerprints.save(path);
+            return new JSONObject()
+                    .put("path", path.toAbsolutePath().toString())
+                    .put("classes", fingerprints.size())
+                    .put("bytes", size);
+        } catch (IllegalArgumentException e) {
+            return errorJson(e.getMessage());
+        } catch (IOException e) {
+            return errorJson("Error saving fingerprints: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves a file path given by a client inside the export directory: the
+     * {@code export-dir} option, or the directory of the first input file. Relative paths
+     * are taken from that directory, and paths that lead out of it, also through symbolic
+     * links, are rejected, so clients cannot read or replace arbitrary files.
+     *
+     * @param pathParam     the client's path, empty for the first input file name plus {@code defaultSuffix}
+     * @throws IllegalArgumentException if the path is outside the export directory or there is none
+     */
+    private Path resolveClientPath(String pathParam, String defaultSuffix) throws IOException {
+        List<File> inputs = getDecompiler().getArgs().getInputFiles();
+        String configured = pluginOptions.getExportDir();
+        Path dir;
+        if (configured != null && !configured.isEmpty()) {
+            dir = Path.of(configured);
+        } else if (!inputs.isEmpty()) {
+            dir = inputs.get(0).toPath().toAbsolutePath().getParent();
+        } else {
+            throw new IllegalArgumentException("No export directory: set the 'export-dir' option");
+        }
+        dir = dir.toRealPath();
+
+        Path path;
+        if (!pathParam.isEmpty()) {
+            path = dir.resolve(pathParam).normalize();
+        } else if (!inputs.isEmpty()) {
+            path = dir.resolve(inputs.get(0).getName() + defaultSuffix);
+        } else {
+            throw new IllegalArgumentException("No input file to name the file after; pass 'path'");
+        }
+        Path parent = path.getParent();
+        if (!path.startsWith(dir) || parent == null || !Files.isDirectory(parent)
+                || !parent.toRealPath().startsWith(dir) || Files.isSymbolicLink(path)) {
+            throw new IllegalArgumentException("Path must be a file inside the export directory " + dir + ": " + pathParam);
+        }
+        return parent.toRealPath().resolve(path.getFileName());
+    }
+
+    /**
+     * Diffs the loaded APK against a fingerprint file saved from another release.
+     *
+     * @param params JSON with "path" to the fingerprint file and optional "limit" (classes listed per category)
+     */
+    private JSONObject handleDiffAgainst(JSONObject params) {
+        String pathParam = params.optString("path", "");
+        if (pathParam.isEmpty()) {
+            return errorJson("Missing required parameter 'path'");
+        }
+        ClassFingerprints fingerprints = fingerprintIndex.get(getDecompiler());
+        if (fingerprints == null) {
+            return indexNotReadyJson(fingerprintIndex);
+        }
+
+        try {
+            ClassFingerprints previous = ClassFingerprints.load(resolveClientPath(pathParam, ""));
+            int limit = Math.min(Math.max(0, params.optInt("limit", 500)), 5000);
+            return fingerprints.diff(previous, limit).put("against", pathParam);
+        } catch (IllegalArgumentException e) {
+            return errorJson(e.getMessage());
+        } catch (IOException e) {
+            return errorJson("Error reading fingerprint file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the first source line of a method that mentions the target, or {@code null}
+     * if the class cannot be decompiled within the decompile budget.
+     */
+    private String usageSnippet(MethodNode mth, ApiUsageScanner.Target target) {
+        String needle;
+        if (target.name().equals("<init>")) {
+            String simpleName = target.className().substring(target.className().lastIndexOf('.') + 1);
+            needle = "new " + simpleName.substring(simpleName.lastIndexOf('$') + 1) + "(";
+        } else {
+            needle = target.name();
+        }
+
+        try {
+            JavaClass top = mth.getParentClass().getTopParentClass().getJavaNode();
+            String code = decompileCoordinator.getCode(top, pluginOptions.getDecompileBudgetMs(), false);
+            JavaMethod javaMethod = mth.getJavaNode();
+            if (javaMethod != null) {
+                String methodCode = javaMethod.getCodeStr();
+                if (methodCode == null || methodCode.isBlank()) {
+                    methodCode = MethodExtractor.extract(javaMethod, code);
+                }
+                if (methodCode != null && !methodCode.isBlank()) {
+                    code = methodCode;
+                }
+            }
+            for (String line : code.split("\n")) {
+                if (line.contains(needle)) {
+                    String trimmed = line.trim();
+                    return trimmed.length() > 200 ? trimmed.substring(0, 200) + "..." : trimmed;
+                }
+            }
+        } catch (Exception e) {
+            // no snippet for classes that fail or take too long to decompile
+        }
+        return null;
+    }
+
 }
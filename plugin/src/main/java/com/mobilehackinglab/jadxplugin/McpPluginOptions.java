@@ -8,18 +8,171 @@ import static com.mobilehackinglab.jadxplugin.McpPlugin.PLUGIN_ID;
 public class McpPluginOptions extends BasePluginOptionsBuilder {
 
     private String httpInterface;
+    private int decompileThreads;
+    private int responseCacheMb;
+    private int workerThreads;
+    private int maxQueuedRequests;
+    private int maxQueueMs;
+    private int listenBacklog;
+    private int decompileBudgetMs;
+    private int jobThreads;
+    private int maxQueuedJobs;
+    private int jobRetentionMinutes;
+    private int profileMaxClasses;
+    private String sourceArchive;
+    private String exportDir;
 
     @Override
     public void registerOptions() {
         strOption(PLUGIN_ID + ".http-interface")
-                .description("interface to run mcp server on")
+                .description("interface to run mcp server on: http://host:port, or unix:/path/to/socket for a local Unix domain socket")
                 .defaultValue("http://localhost:8085")
                 .flags(OptionFlag.PER_PROJECT)
                 .setter(v -> httpInterface = v);
+
+        intOption(PLUGIN_ID + ".decompile-threads")
+                .description("max number of classes decompiled in parallel by the mcp server")
+                .defaultValue(Runtime.getRuntime().availableProcessors())
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> decompileThreads = nonNegative("decompile-threads", v));
+
+        intOption(PLUGIN_ID + ".response-cache-mb")
+                .description("max size in MB of cached tool responses served with ETags")
+                .defaultValue(64)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> responseCacheMb = v);
+
+        intOption(PLUGIN_ID + ".worker-threads")
+                .description("number of threads serving tool requests")
+                .defaultValue(5)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> workerThreads = nonNegative("worker-threads", v));
+
+        intOption(PLUGIN_ID + ".max-queued-requests")
+                .description("max requests waiting for a worker before new ones are rejected with 503")
+                .defaultValue(64)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> maxQueuedRequests = v);
+
+        intOption(PLUGIN_ID + ".max-queue-ms")
+                .description("requests that waited longer than this for a worker are rejected with 503")
+                .defaultValue(10000)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> maxQueueMs = v);
+
+        intOption(PLUGIN_ID + ".listen-backlog")
+                .description("TCP listen backlog of the mcp server socket")
+                .defaultValue(50)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> listenBacklog = v);
+
+        intOption(PLUGIN_ID + ".decompile-budget-ms")
+                .description("max time to wait for a decompilation before answering with smali instead (0 waits without limit)")
+                .defaultValue(5000)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> decompileBudgetMs = v);
+
+        intOption(PLUGIN_ID + ".job-threads")
+                .description("number of background jobs running at the same time")
+                .defaultValue(2)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> jobThreads = nonNegative("job-threads", v));
+
+        intOption(PLUGIN_ID + ".max-queued-jobs")
+                .description("max background jobs waiting to run before new ones are rejected")
+                .defaultValue(16)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> maxQueuedJobs = v);
+
+        intOption(PLUGIN_ID + ".job-retention-minutes")
+                .description("how long results of finished background jobs are kept")
+                .defaultValue(30)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> jobRetentionMinutes = v);
+
+        intOption(PLUGIN_ID + ".profile-max-classes")
+                .description("max number of classes whose decompile cost and access count are tracked")
+                .defaultValue(10000)
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> profileMaxClasses = v);
+
+        strOption(PLUGIN_ID + ".source-archive")
+                .description("archive written by export_archive to serve class sources from instead of decompiling (empty to disable)")
+                .defaultValue("")
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> sourceArchive = v);
+
+        strOption(PLUGIN_ID + ".export-dir")
+                .description("only directory in which tools read and write files named by clients (empty: the directory of the input file)")
+                .defaultValue("")
+                .flags(OptionFlag.PER_PROJECT)
+                .setter(v -> exportDir = v);
+    }
+
+    /**
+     * Rejects negative thread counts when the options are set rather than when the pools are built.
+     */
+    private static int nonNegative(String option, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(PLUGIN_ID + "." + option + " must be 0 or more, got " + value);
+        }
+        return value;
     }
 
     public String getHttpInterface() {
         return httpInterface;
     }
 
+    public int getDecompileThreads() {
+        return decompileThreads;
+    }
+
+    public int getResponseCacheMb() {
+        return responseCacheMb;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public int getMaxQueueMs() {
+        return maxQueueMs;
+    }
+
+    public int getListenBacklog() {
+        return listenBacklog;
+    }
+
+    public int getDecompileBudgetMs() {
+        return decompileBudgetMs;
+    }
+
+    public int getJobThreads() {
+        return jobThreads;
+    }
+
+    public int getMaxQueuedJobs() {
+        return maxQueuedJobs;
+    }
+
+    public int getJobRetentionMinutes() {
+        return jobRetentionMinutes;
+    }
+
+    public int getProfileMaxClasses() {
+        return profileMaxClasses;
+    }
+
+    public String getSourceArchive() {
+        return sourceArchive;
+    }
+
+    public String getExportDir() {
+        return exportDir;
+    }
+
 }
@@ -0,0 +1,140 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.mobilehackinglab.jadxplugin.McpPlugin.PLUGIN_ID;
+
+/**
+ * Headless launcher: loads the given input files with a standalone {@link JadxDecompiler}
+ * and serves the same HTTP tools as the GUI plugin, without Jadx GUI.
+ *
+ * <p>The server binds before loading starts, so clients get a retryable "not ready"
+ * answer (and progress on {@code /ready}) instead of connection errors.</p>
+ *
+ * <p>Usage (Jadx libraries must be on the classpath):</p>
+ * <pre>
+ * java -cp jadx-mcp-plugin.jar:jadx/lib/* com.mobilehackinglab.jadxplugin.McpServerMain \
+ *     app.apk [--http-interface http://localhost:8085] [--threads N] [-Pjadx-mcp.option=value]...
+ * </pre>
+ *
+ * <p>{@code -P} arguments set plugin options, as with {@code jadx-gui -P...}.</p>
+ */
+public final class McpServerMain {
+
+    private McpServerMain() {
+    }
+
+    public static void main(String[] args) {
+        List<File> inputs = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--http-interface" -> options.put(PLUGIN_ID + ".http-interface", args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("-P") && args[i].contains("=")) {
+                            int eq = args[i].indexOf('=');
+                            options.put(args[i].substring(2, eq), args[i].substring(eq + 1));
+                        } else {
+                            inputs.add(new File(args[i]));
+                        }
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage("Invalid arguments");
+            return;
+        }
+        if (threads < 0) {
+            usage("--threads must be 0 or more, got " + threads);
+            return;
+        }
+        if (inputs.isEmpty()) {
+            usage("No input file given");
+            return;
+        }
+        for (File input : inputs) {
+            if (!input.isFile()) {
+                usage("Input file not found: " + input);
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+
+        JadxArgs jadxArgs = new JadxArgs();
+        jadxArgs.setInputFiles(inputs);
+        jadxArgs.setThreadsCount(threads);
+        // this launcher drives the server itself; the copy loaded via ServiceLoader must stay idle
+        Set<String> disabledPlugins = new HashSet<>(jadxArgs.getDisabledPlugins());
+        disabledPlugins.add(PLUGIN_ID);
+        jadxArgs.setDisabledPlugins(disabledPlugins);
+
+        McpPluginOptions pluginOptions = new McpPluginOptions();
+        pluginOptions.registerOptions();
+        try {
+            pluginOptions.setOptions(options);
+        } catch (RuntimeException e) {
+            usage(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return;
+        }
+
+        JadxDecompiler decompiler = new JadxDecompiler(jadxArgs);
+        AtomicReference<JadxDecompiler> loaded = new AtomicReference<>();
+        McpPlugin plugin = new McpPlugin(loaded::get, pluginOptions);
+        long argsDone = System.nanoTime();
+
+        try {
+            plugin.startStandalone();
+        } catch (Exception e) {
+            System.err.println("[MCP] Failed to start server: " + e.getMessage());
+            decompiler.close();
+            System.exit(1);
+            return;
+        }
+        long serverDone = System.nanoTime();
+
+        try {
+            decompiler.load();
+        } catch (Exception e) {
+            System.err.println("[MCP] Failed to load input: " + e.getMessage());
+            decompiler.close();
+            System.exit(1);
+            return;
+        }
+        loaded.set(decompiler);
+        plugin.subscribeEvents(decompiler.events());
+        plugin.warmUpIndexes();
+        long loadDone = System.nanoTime();
+        System.out.println("[MCP] Loaded " + decompiler.getClassesWithInners().size() + " classes and "
+                + decompiler.getResources().size() + " resources using " + threads + " threads");
+
+        System.out.printf("[MCP] Startup timings: init %d ms, server %d ms, load %d ms, total %d ms%n",
+                millis(start, argsDone), millis(argsDone, serverDone), millis(serverDone, loadDone), millis(start, loadDone));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(decompiler::close));
+    }
+
+    private static long millis(long from, long to) {
+        return (to - from) / 1_000_000;
+    }
+
+    private static void usage(String message) {
+        System.err.println("[MCP] " + message);
+        System.err.println("Usage: McpServerMain <input-file>... [--http-interface http://localhost:8085] [--threads N] [-P" + PLUGIN_ID + ".<option>=<value>]...");
+        System.exit(2);
+    }
+}
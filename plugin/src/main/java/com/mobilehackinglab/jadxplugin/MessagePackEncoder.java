@@ -0,0 +1,125 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes responses as MessagePack. Integers use the shortest encoding,
+ * other numbers are 64-bit floats.
+ */
+public final class MessagePackEncoder implements ResponseEncoder {
+
+    @Override
+    public String name() {
+        return "msgpack";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/msgpack";
+    }
+
+    @Override
+    public byte[] encode(JSONObject json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        write(out, json);
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object raw) {
+        Object value = ResponseEncoder.normalize(raw);
+        if (value == null) {
+            out.write(0xc0);
+        } else if (value instanceof Boolean b) {
+            out.write(b ? 0xc3 : 0xc2);
+        } else if (value instanceof Long l) {
+            writeInteger(out, l);
+        } else if (value instanceof Double d) {
+            out.write(0xcb);
+            writeBigEndian(out, Double.doubleToLongBits(d), 8);
+        } else if (value instanceof String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            int length = bytes.length;
+            if (length < 32) {
+                out.write(0xa0 | length);
+            } else if (length <= 0xff) {
+                out.write(0xd9);
+                out.write(length);
+            } else if (length <= 0xffff) {
+                out.write(0xda);
+                writeBigEndian(out, length, 2);
+            } else {
+                out.write(0xdb);
+                writeBigEndian(out, length, 4);
+            }
+            out.write(bytes, 0, length);
+        } else if (value instanceof JSONArray array) {
+            writeContainerHead(out, array.length(), 0x90, 0xdc, 0xdd);
+            for (int i = 0; i < array.length(); i++) {
+                write(out, array.opt(i));
+            }
+        } else {
+            JSONObject obj = (JSONObject) value;
+            writeContainerHead(out, obj.length(), 0x80, 0xde, 0xdf);
+            for (String key : obj.keySet()) {
+                write(out, key);
+                write(out, obj.opt(key));
+            }
+        }
+    }
+
+    private static void writeInteger(ByteArrayOutputStream out, long l) {
+        if (l >= 0) {
+            if (l < 128) {
+                out.write((int) l);
+            } else if (l <= 0xffL) {
+                out.write(0xcc);
+                out.write((int) l);
+            } else if (l <= 0xffffL) {
+                out.write(0xcd);
+                writeBigEndian(out, l, 2);
+            } else if (l <= 0xffffffffL) {
+                out.write(0xce);
+                writeBigEndian(out, l, 4);
+            } else {
+                out.write(0xcf);
+                writeBigEndian(out, l, 8);
+            }
+        } else if (l >= -32) {
+            out.write(0xe0 | (int) (l & 0x1f));
+        } else if (l >= Byte.MIN_VALUE) {
+            out.write(0xd0);
+            out.write((int) l);
+        } else if (l >= Short.MIN_VALUE) {
+            out.write(0xd1);
+            writeBigEndian(out, l, 2);
+        } else if (l >= Integer.MIN_VALUE) {
+            out.write(0xd2);
+            writeBigEndian(out, l, 4);
+        } else {
+            out.write(0xd3);
+            writeBigEndian(out, l, 8);
+        }
+    }
+
+    private static void writeContainerHead(ByteArrayOutputStream out, int size, int fix, int head16, int head32) {
+        if (size < 16) {
+            out.write(fix | size);
+        } else if (size <= 0xffff) {
+            out.write(head16);
+            writeBigEndian(out, size, 2);
+        } else {
+            out.write(head32);
+            writeBigEndian(out, size, 4);
+        }
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream out, long value, int bytes) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
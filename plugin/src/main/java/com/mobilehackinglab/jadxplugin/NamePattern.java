@@ -0,0 +1,130 @@
+package com.mobilehackinglab.jadxplugin;
+
+import java.util.regex.Pattern;
+
+/**
+ * A glob or regex over symbol names, with the literal prefix every match must start with,
+ * so that a sorted name array can be narrowed down by binary search before matching.
+ *
+ * <p>Globs match the whole name; {@code *} matches any run of characters (dots included)
+ * and {@code ?} a single character, e.g. {@code com.bank.*.crypto.*} or {@code *Activity}.
+ * Regexes match anywhere in the name unless anchored. Only a regex starting with {@code ^}
+ * has a literal prefix, and none is derived from case-insensitive patterns.</p>
+ */
+public final class NamePattern {
+
+    private static final String REGEX_META = ".[]()*+?{}|^$\\";
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    private final Pattern pattern;
+    private final boolean wholeName;
+    private final String literalPrefix;
+    private final String exactName;
+
+    private NamePattern(Pattern pattern, boolean wholeName, String literalPrefix, String exactName) {
+        this.pattern = pattern;
+        this.wholeName = wholeName;
+        this.literalPrefix = literalPrefix;
+        this.exactName = exactName;
+    }
+
+    public static NamePattern glob(String glob, boolean ignoreCase) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int firstWildcard = -1;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (firstWildcard < 0) {
+                    firstWildcard = i;
+                }
+                flushLiteral(regex, literal);
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        flushLiteral(regex, literal);
+
+        Pattern pattern = Pattern.compile(regex.toString(), flags(ignoreCase));
+        if (ignoreCase) {
+            return new NamePattern(pattern, true, "", null);
+        }
+        if (firstWildcard < 0) {
+            return new NamePattern(pattern, true, glob, glob);
+        }
+        return new NamePattern(pattern, true, trimSurrogate(glob.substring(0, firstWildcard)), null);
+    }
+
+    public static NamePattern regex(String regex, boolean ignoreCase) {
+        Pattern pattern = Pattern.compile(regex, flags(ignoreCase));
+        String prefix = ignoreCase || !regex.startsWith("^") || regex.indexOf('|') >= 0 ? "" : regexPrefix(regex);
+        return new NamePattern(pattern, false, prefix, null);
+    }
+
+    /**
+     * Reads the literal characters after the leading {@code ^}, up to the first metacharacter.
+     * A character followed by a quantifier that allows zero repetitions is not part of it.
+     */
+    private static String regexPrefix(String regex) {
+        StringBuilder prefix = new StringBuilder();
+        int i = 1;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (REGEX_META.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+            if (next < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                break;
+            }
+            prefix.append(literal);
+            i = next;
+        }
+        return trimSurrogate(prefix.toString());
+    }
+
+    private static void flushLiteral(StringBuilder regex, StringBuilder literal) {
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    private static int flags(boolean ignoreCase) {
+        return ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+    }
+
+    /**
+     * Drops a trailing high surrogate, which has no UTF-8 encoding on its own.
+     */
+    private static String trimSurrogate(String prefix) {
+        return !prefix.isEmpty() && Character.isHighSurrogate(prefix.charAt(prefix.length() - 1))
+                ? prefix.substring(0, prefix.length() - 1) : prefix;
+    }
+
+    /**
+     * Literal text every matching name starts with; empty if unknown.
+     */
+    public String literalPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * The only name this pattern matches if it has no wildcards, otherwise {@code null}.
+     */
+    public String exactName() {
+        return exactName;
+    }
+
+    public boolean matches(String name) {
+        return wholeName ? pattern.matcher(name).matches() : pattern.matcher(name).find();
+    }
+}
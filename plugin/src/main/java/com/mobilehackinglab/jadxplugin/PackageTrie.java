@@ -0,0 +1,234 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.core.dex.nodes.ClassNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Package tree of the loaded classes, for browsing an APK one level at a time.
+ *
+ * <p>Each node stores its package segment, its children sorted by segment, the number
+ * of classes directly in the package and in its whole subtree. Class names are kept in
+ * one array ordered by package, so a package's own classes are a contiguous range.
+ * Children with a given prefix are found with a binary search. Inner classes are not
+ * counted; they belong to their top-level class.</p>
+ */
+public final class PackageTrie implements BackgroundIndex.Sized {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        final String segment;
+        final String name;
+        Node[] children = NO_CHILDREN;
+        int classStart;
+        int classEnd;
+        int totalClasses;
+
+        Node(String segment, String name) {
+            this.segment = segment;
+            this.name = name;
+        }
+
+        int classCount() {
+            return classEnd - classStart;
+        }
+    }
+
+    private final Node root;
+    private final String[] classNames;
+    private final long retainedBytes;
+
+    private PackageTrie(Node root, String[] classNames) {
+        this.root = root;
+        this.classNames = classNames;
+        // class names are the strings Jadx keeps for the classes, only the array is ours
+        this.retainedBytes = measure(root) + HeapSize.array(classNames.length, HeapSize.REFERENCE);
+    }
+
+    private static long measure(Node node) {
+        long bytes = HeapSize.object(3 * HeapSize.REFERENCE + 3 * 4) + HeapSize.string(node.segment)
+                + HeapSize.string(node.name) + HeapSize.array(node.children.length, HeapSize.REFERENCE);
+        for (Node child : node.children) {
+            bytes += measure(child);
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of top-level classes in the tree.
+     */
+    @Override
+    public int size() {
+        return classNames.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Builds the trie from the top-level classes among {@code classes}.
+     */
+    public static PackageTrie build(List<ClassNode> classes, BackgroundIndex.Progress progress) {
+        progress.setTotal(classes.size());
+        // packages in name order, so parents are created before their children
+        TreeMap<String, List<String>> byPackage = new TreeMap<>();
+        for (ClassNode cls : classes) {
+            if (!cls.isInner()) {
+                byPackage.computeIfAbsent(cls.getPackage(), k -> new ArrayList<>()).add(cls.getFullName());
+            }
+            progress.advance();
+        }
+
+        List<String> names = new ArrayList<>();
+        Node root = new Node("", "");
+        TreeMap<String, Node> nodes = new TreeMap<>();
+        nodes.put("", root);
+        for (var entry : byPackage.entrySet()) {
+            Node node = node(nodes, entry.getKey());
+            List<String> pkgClasses = entry.getValue();
+            pkgClasses.sort(Comparator.naturalOrder());
+            node.classStart = names.size();
+            names.addAll(pkgClasses);
+            node.classEnd = names.size();
+        }
+        link(nodes);
+        countSubtree(root);
+        return new PackageTrie(root, names.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the node of a package, creating it and its missing ancestors.
+     */
+    private static Node node(TreeMap<String, Node> nodes, String pkg) {
+        Node node = nodes.get(pkg);
+        if (node == null) {
+            int dot = pkg.lastIndexOf('.');
+            if (dot >= 0) {
+                node(nodes, pkg.substring(0, dot));
+            }
+            node = new Node(pkg.substring(dot + 1), pkg);
+            nodes.put(pkg, node);
+        }
+        return node;
+    }
+
+    /**
+     * Fills in the children arrays, sorted by segment.
+     */
+    private static void link(TreeMap<String, Node> nodes) {
+        TreeMap<String, List<Node>> children = new TreeMap<>();
+        for (Node node : nodes.values()) {
+            if (node.name.isEmpty()) {
+                continue;
+            }
+            // siblings share the parent prefix, so name order is segment order
+            int dot = node.name.lastIndexOf('.');
+            String parent = dot >= 0 ? node.name.substring(0, dot) : "";
+            children.computeIfAbsent(parent, k -> new ArrayList<>()).add(node);
+        }
+        for (var entry : children.entrySet()) {
+            nodes.get(entry.getKey()).children = entry.getValue().toArray(NO_CHILDREN);
+        }
+    }
+
+    private static int countSubtree(Node node) {
+        int total = node.classCount();
+        for (Node child : node.children) {
+            total += countSubtree(child);
+        }
+        node.totalClasses = total;
+        return total;
+    }
+
+    /**
+     * Lists the sub-packages of a package, optionally only those whose segment starts with
+     * {@code prefix}, and optionally the package's own classes.
+     *
+     * @param pkg        package to expand, {@code ""} for the root
+     * @param classLimit max class names to return, {@code 0} for none
+     * @return the listing, or {@code null} if there is no such package
+     */
+    public JSONObject list(String pkg, String prefix, int offset, int limit, int classLimit) {
+        Node node = find(pkg);
+        if (node == null) {
+            return null;
+        }
+
+        int from = lowerBound(node.children, prefix);
+        int to = from;
+        while (to < node.children.length && node.children[to].segment.startsWith(prefix)) {
+            to++;
+        }
+        int matched = to - from;
+
+        // in long, so that large offsets and limits from clients cannot overflow
+        int start = from + (int) Math.min(matched, Math.max(0L, offset));
+        int end = from + (int) Math.min(matched, Math.max(0L, (long) offset + limit));
+        JSONArray packages = new JSONArray();
+        for (int i = start; i < end; i++) {
+            Node child = node.children[i];
+            packages.put(new JSONObject()
+                    .put("name", child.name)
+                    .put("segment", child.segment)
+                    .put("classes", child.classCount())
+                    .put("total_classes", child.totalClasses)
+                    .put("sub_packages", child.children.length));
+        }
+
+        JSONObject json = new JSONObject()
+                .put("package", node.name)
+                .put("classes", node.classCount())
+                .put("total_classes", node.totalClasses)
+                .put("sub_packages", node.children.length)
+                .put("matched", matched)
+                .put("offset", offset)
+                .put("limit", limit)
+                .put("packages", packages);
+        if (classLimit > 0) {
+            JSONArray names = new JSONArray();
+            int classEnd = (int) Math.min(node.classEnd, (long) node.classStart + classLimit);
+            for (int i = node.classStart; i < classEnd; i++) {
+                names.put(classNames[i]);
+            }
+            json.put("class_names", names);
+        }
+        return json;
+    }
+
+    private Node find(String pkg) {
+        Node node = root;
+        if (pkg.isEmpty()) {
+            return node;
+        }
+        for (String segment : pkg.split("\\.")) {
+            int index = lowerBound(node.children, segment);
+            if (index >= node.children.length || !node.children[index].segment.equals(segment)) {
+                return null;
+            }
+            node = node.children[index];
+        }
+        return node;
+    }
+
+    private static int lowerBound(Node[] nodes, String key) {
+        int lo = 0;
+        int hi = nodes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (nodes[mid].segment.compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
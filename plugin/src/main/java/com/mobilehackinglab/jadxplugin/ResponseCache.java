@@ -0,0 +1,250 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JadxDecompiler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * LRU cache of serialized tool responses that never change for a loaded APK.
+ *
+ * <p>Keys combine the decompiler snapshot, the tool name and the canonical form of the
+ * parameters. Every entry carries a strong entity tag derived from its bytes, so clients
+ * can revalidate with {@code If-None-Match} and get {@code 304 Not Modified}.
+ * When Jadx replaces the decompiler, all entries are dropped; when the user renames
+ * something, the entries of the affected classes are. A response whose computation
+ * overlapped an invalidation is not stored, since it may reflect the old names.</p>
+ */
+public final class ResponseCache {
+
+    public record Entry(byte[] body, String etag) {
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+    private JadxDecompiler snapshot;
+    private int generation;
+    private long invalidations;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long notModified;
+    private long invalidated;
+
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds the cache key of a tool call against the given decompiler.
+     */
+    public synchronized String key(JadxDecompiler decompiler, String tool, JSONObject params) {
+        if (snapshot != decompiler) {
+            entries.clear();
+            currentBytes = 0;
+            snapshot = decompiler;
+            generation++;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(generation).append(':').append(tool).append(':');
+        appendCanonical(sb, params);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of invalidations so far; take it before computing a response and
+     * pass it to {@link #put}.
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a serialized response and returns it together with its entity tag.
+     * Bodies larger than the whole cache are tagged but not stored.
+     *
+     * @param invalidations {@link #invalidations()} taken before the response was computed
+     * @return {@code null} if the cache was invalidated since; the response is not stored then
+     */
+    public Entry put(String key, byte[] body, long invalidations) {
+        Entry entry = new Entry(body, etag(body));
+        synchronized (this) {
+            if (invalidations != this.invalidations) {
+                return null;
+            }
+            if (body.length > maxBytes) {
+                return entry;
+            }
+            if (!key.startsWith(generation + ":")) {
+                // built against a decompiler that has been replaced meanwhile
+                return entry;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentBytes -= previous.body().length;
+            }
+            currentBytes += body.length;
+            Iterator<Entry> it = entries.values().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                currentBytes -= it.next().body().length;
+                it.remove();
+                evictions++;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Drops the responses of tool calls whose {@code class_name} parameter is one of the given
+     * classes or one of their inner classes.
+     *
+     * @return the number of dropped entries
+     */
+    public synchronized int invalidateClasses(Collection<String> classNames) {
+        invalidations++;
+        int removed = 0;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (mentionsClass(entry.getKey(), classNames)) {
+                currentBytes -= entry.getValue().body().length;
+                it.remove();
+                removed++;
+            }
+        }
+        invalidated += removed;
+        return removed;
+    }
+
+    /**
+     * Drops all entries, including responses still being produced.
+     */
+    public synchronized void invalidateAll() {
+        invalidated += entries.size();
+        entries.clear();
+        currentBytes = 0;
+        generation++;
+        invalidations++;
+    }
+
+    private static boolean mentionsClass(String key, Collection<String> classNames) {
+        for (String name : classNames) {
+            String quoted = JSONObject.quote(name);
+            // the class name without its closing quote, so inner classes match too
+            String needle = "\"class_name\":" + quoted.substring(0, quoted.length() - 1);
+            for (int i = key.indexOf(needle); i >= 0; i = key.indexOf(needle, i + 1)) {
+                char next = key.charAt(i + needle.length());
+                if (next == '"' || next == '$' || next == '.') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks an {@code If-None-Match} header value against an entity tag.
+     */
+    public boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                synchronized (this) {
+                    notModified++;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized JSONObject toJson() {
+        return new JSONObject()
+                .put("entries", entries.size())
+                .put("bytes", currentBytes)
+                .put("max_bytes", maxBytes)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("not_modified", notModified)
+                .put("invalidated", invalidated);
+    }
+
+    /**
+     * Returns the canonical form of a JSON value, with object keys in sorted order.
+     */
+    public static String canonicalJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(sb, value);
+        return sb.toString();
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a JSON value with object keys in sorted order, so equal parameters
+     * always produce the same key regardless of how the client ordered them.
+     */
+    private static void appendCanonical(StringBuilder sb, Object value) {
+        if (value instanceof JSONObject obj) {
+            sb.append('{');
+            boolean first = true;
+            for (String name : new TreeSet<>(obj.keySet())) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(JSONObject.quote(name)).append(':');
+                appendCanonical(sb, obj.get(name));
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray array) {
+            sb.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendCanonical(sb, array.get(i));
+            }
+            sb.append(']');
+        } else if (value instanceof String str) {
+            sb.append(JSONObject.quote(str));
+        } else {
+            sb.append(JSONObject.valueToString(value));
+        }
+    }
+
+}
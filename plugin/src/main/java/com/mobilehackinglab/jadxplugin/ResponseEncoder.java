@@ -0,0 +1,94 @@
+package com.mobilehackinglab.jadxplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes tool responses into the format a client asked for with its {@code Accept} header.
+ *
+ * <p>All encoders write the same data model (objects, arrays, strings, numbers, booleans
+ * and null), so clients get the same schema in every format.</p>
+ */
+public interface ResponseEncoder {
+
+    ResponseEncoder JSON = new ResponseEncoder() {
+        @Override
+        public String name() {
+            return "json";
+        }
+
+        @Override
+        public String contentType() {
+            return "application/json";
+        }
+
+        @Override
+        public byte[] encode(JSONObject json) {
+            return json.toString(2).getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    ResponseEncoder CBOR = new CborEncoder();
+
+    ResponseEncoder MESSAGE_PACK = new MessagePackEncoder();
+
+    /**
+     * Short name used in cache keys and metrics.
+     */
+    String name();
+
+    String contentType();
+
+    byte[] encode(JSONObject json);
+
+    /**
+     * Picks the encoder for an {@code Accept} header: the first listed media type that is
+     * supported wins, and JSON is the default. Quality values are not taken into account.
+     */
+    static ResponseEncoder negotiate(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return JSON;
+        }
+        for (String range : accept.split(",")) {
+            int semicolon = range.indexOf(';');
+            String type = (semicolon >= 0 ? range.substring(0, semicolon) : range).trim().toLowerCase();
+            ResponseEncoder encoder = switch (type) {
+                case "application/json" -> JSON;
+                case "application/cbor" -> CBOR;
+                case "application/msgpack", "application/x-msgpack", "application/vnd.msgpack" -> MESSAGE_PACK;
+                default -> null;
+            };
+            if (encoder != null) {
+                return encoder;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Maps an org.json value to the encoders' data model: {@code null}, {@link Boolean},
+     * {@link Long}, {@link Double}, {@link String}, {@link JSONObject} or {@link JSONArray}.
+     */
+    static Object normalize(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof BigInteger big) {
+            return big.bitLength() < 64 ? (Object) big.longValue() : big.toString();
+        }
+        if (value instanceof Boolean || value instanceof String || value instanceof JSONObject || value instanceof JSONArray) {
+            return value;
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.plugins.input.data.IClassData;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disassembles classes and methods straight from the input data, without decompiling.
+ *
+ * <p>Disassembly cost is linear in the bytecode size, so it stays fast and reliable for
+ * obfuscated code that Jadx is slow to decompile or cannot decompile at all.</p>
+ */
+public final class SmaliDisassembler {
+
+    /**
+     * Text Jadx returns instead of smali when the class disassembler (baksmali) fails.
+     */
+    private static final String CLASS_FAILED_MARKER = "Failed to disassemble class";
+
+    private SmaliDisassembler() {
+    }
+
+    /**
+     * Returns the smali of a class, including its inner classes. If the class disassembler
+     * is unavailable, falls back to concatenating the disassembly of each method.
+     */
+    public static String disassembleClass(ClassNode cls) {
+        String code = cls.getDisassembledCode();
+        IClassData clsData = cls.getClsData();
+        if (!code.contains(CLASS_FAILED_MARKER) || clsData == null) {
+            return code;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("# class ").append(cls.getFullName()).append('\n');
+        clsData.copy().visitFieldsAndMethods(field -> {
+        }, method -> sb.append('\n').append(method.disassembleMethod()).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the smali of all methods of a class whose name (or renamed alias) matches,
+     * keyed by method short id in declaration order.
+     */
+    public static Map<String, String> disassembleMethods(ClassNode cls, String methodName) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (MethodNode method : cls.getMethods()) {
+            if (method.getAlias().equals(methodName) || method.getName().equals(methodName)) {
+                result.put(method.getMethodInfo().getShortId(), null);
+            }
+        }
+        IClassData clsData = cls.getClsData();
+        if (result.isEmpty() || clsData == null) {
+            return result;
+        }
+        clsData.copy().visitFieldsAndMethods(field -> {
+        }, method -> {
+            String shortId = BytecodeScanner.shortId(method.getMethodRef());
+            if (result.containsKey(shortId)) {
+                result.put(shortId, method.disassembleMethod());
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,327 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.JavaClass;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Decompiled sources of a whole APK in one file, for offline pipelines and for serving
+ * {@code get_class_source} without decompiling.
+ *
+ * <p>Layout: a header (magic, index offset, input id), then one raw-deflate entry per
+ * top-level class, then an index sorted by class name with each entry's offset and sizes.
+ * A reader memory-maps the file and keeps only the index on the heap, so any class is
+ * served with one binary search and one read of its entry. The input id records which
+ * APK the archive was made from; a reader should ignore archives of another input.</p>
+ */
+public final class SourceArchive implements Closeable {
+
+    private static final int MAGIC = 0x4A534131; // "JSA1"
+    // archives are memory-mapped as one buffer, which int positions limit to 2 GB
+    private static final long MAX_ARCHIVE_BYTES = Integer.MAX_VALUE;
+
+    private record IndexEntry(String name, long offset, int compressedSize, int size) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String inputId;
+    private final String[] names;
+    private final long[] offsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+
+    private SourceArchive(FileChannel channel, MappedByteBuffer buffer, String inputId, String[] names,
+                          long[] offsets, int[] compressedSizes, int[] sizes) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.inputId = inputId;
+        this.names = names;
+        this.offsets = offsets;
+        this.compressedSizes = compressedSizes;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Decompiles the classes in parallel through the coordinator and writes them to an archive.
+     * At most two classes per decompile thread are held in memory. The file is written to a
+     * temporary file next to {@code path} and moved into place when complete.
+     *
+     * @param unload whether to unload classes the export decompiled once written; the
+     *               coordinator keeps any class something else asked for meanwhile, see
+     *               {@link DecompileCoordinator#unloadIfUnused(JavaClass)}
+     * @throws IOException if {@code path} exists and is not a source archive, or the archive
+     *                     would exceed the 2 GB that {@link #open} can map; nothing is
+     *                     written to {@code path} then
+     *
+     * @return a summary with counts, sizes and the names of classes that failed to decompile
+     */
+    public static JSONObject write(Path path, String inputId, List<JavaClass> classes, DecompileCoordinator coordinator,
+                                   boolean unload, JobManager.JobContext job) throws IOException, InterruptedException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !isArchive(path)) {
+            throw new IOException("Refusing to overwrite " + path + ", which is not a source archive");
+        }
+        List<JavaClass> sorted = new ArrayList<>(classes);
+        sorted.sort(Comparator.comparing(JavaClass::getFullName));
+        int count = sorted.size();
+        job.setTotal(count);
+
+        // a fresh name, so no existing file or link is written through
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + ".", ".tmp");
+        List<IndexEntry> entries = new ArrayList<>(count);
+        List<String> failed = new ArrayList<>();
+        long rawBytes = 0;
+        int unloaded = 0;
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(MAGIC);
+            header.writeLong(0); // index offset, filled in at the end
+            header.writeUTF(inputId);
+            out.write(ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            int window = coordinator.getParallelism() * 2;
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>(count);
+            int submitted = 0;
+            for (int i = 0; i < count; i++) {
+                if (job.isCancelled()) {
+                    throw new InterruptedException("Export cancelled");
+                }
+                while (submitted < count && submitted < i + window) {
+                    JavaClass cls = sorted.get(submitted);
+                    CompletableFuture<String> source = unload ? coordinator.submitUnloadable(cls) : coordinator.submit(cls);
+                    futures.add(source.thenApply(SourceArchive::deflate));
+                    submitted++;
+                }
+
+                JavaClass cls = sorted.get(i);
+                try {
+                    byte[] compressed = futures.set(i, null).get();
+                    long offset = out.position();
+                    checkSize(offset + compressed.length - 4);
+                    out.write(ByteBuffer.wrap(compressed, 4, compressed.length - 4));
+                    int size = ByteBuffer.wrap(compressed, 0, 4).getInt();
+                    entries.add(new IndexEntry(cls.getFullName(), offset, compressed.length - 4, size));
+                    rawBytes += size;
+                } catch (ExecutionException e) {
+                    failed.add(cls.getFullName());
+                }
+                if (unload && coordinator.unloadIfUnused(cls)) {
+                    unloaded++;
+                }
+                job.advance();
+            }
+
+            long indexOffset = out.position();
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            index.writeInt(entries.size());
+            for (IndexEntry entry : entries) {
+                index.writeUTF(entry.name());
+                index.writeLong(entry.offset());
+                index.writeInt(entry.compressedSize());
+                index.writeInt(entry.size());
+            }
+            checkSize(indexOffset + indexBytes.size());
+            out.write(ByteBuffer.wrap(indexBytes.toByteArray()));
+            out.write(ByteBuffer.allocate(Long.BYTES).putLong(0, indexOffset), Integer.BYTES);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return new JSONObject()
+                .put("path", path.toAbsolutePath().toString())
+                .put("classes", entries.size())
+                .put("failed", failed)
+                .put("source_bytes", rawBytes)
+                .put("archive_bytes", Files.size(path))
+                .put("unloaded", unloaded);
+    }
+
+    private static boolean isArchive(Path path) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path, LinkOption.NOFOLLOW_LINKS))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void checkSize(long archiveBytes) throws IOException {
+        if (archiveBytes > MAX_ARCHIVE_BYTES) {
+            throw new IOException("Archive would exceed 2 GB, the largest archive that can be mapped for serving");
+        }
+    }
+
+    /**
+     * Compresses a class source; the first four bytes of the result hold the uncompressed size.
+     */
+    private static byte[] deflate(String source) {
+        byte[] raw = source.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 16);
+            out.writeBytes(ByteBuffer.allocate(4).putInt(raw.length).array());
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Memory-maps an archive and reads its index.
+     *
+     * @throws IOException if the file cannot be read or is not a source archive
+     */
+    public static SourceArchive open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > MAX_ARCHIVE_BYTES) {
+                throw new IOException("Archive larger than 2 GB: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream header = new DataInputStream(new ByteBufferInput(buffer.duplicate()));
+            if (header.readInt() != MAGIC) {
+                throw new IOException("Not a source archive: " + path);
+            }
+            long indexOffset = header.readLong();
+            String inputId = header.readUTF();
+
+            DataInputStream index = new DataInputStream(new ByteBufferInput(buffer.duplicate().position((int) indexOffset)));
+            int count = index.readInt();
+            String[] names = new String[count];
+            long[] offsets = new long[count];
+            int[] compressedSizes = new int[count];
+            int[] sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = index.readUTF();
+                offsets[i] = index.readLong();
+                compressedSizes[i] = index.readInt();
+                sizes[i] = index.readInt();
+            }
+            return new SourceArchive(channel, buffer, inputId, names, offsets, compressedSizes, sizes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException("Corrupt source archive: " + path, e);
+        }
+    }
+
+    public String getInputId() {
+        return inputId;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the source of a top-level class, or {@code null} if it is not in the archive.
+     */
+    public String get(String className) throws IOException {
+        int i = indexOf(className);
+        if (i < 0) {
+            return null;
+        }
+        ByteBuffer entry = buffer.slice((int) offsets[i], compressedSizes[i]);
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(entry);
+            byte[] raw = new byte[sizes[i]];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != raw.length) {
+                throw new IOException("Truncated archive entry: " + className);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive entry: " + className, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private int indexOf(String className) {
+        int lo = 0;
+        int hi = names.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = names[mid].compareTo(className);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a byte buffer as an input stream, for parsing the header and index.
+     */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.api.plugins.input.data.IFieldData;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.annotations.EncodedType;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Index of string constants ({@code const-string} operands and static field initial values)
+ * built from the dex metadata of all loaded classes.
+ *
+ * <p>Distinct values are kept in a sorted array, so prefix queries are a binary search.
+ * Substring and regex queries scan the distinct values in parallel. Each value maps to
+ * the list of places (class + method or field) that reference it.</p>
+ */
+public final class StringIndex implements BackgroundIndex.Sized {
+
+    public enum Mode {
+        PREFIX, SUBSTRING, REGEX
+    }
+
+    /**
+     * A single place referencing a string constant.
+     * Exactly one of {@code methodShortId} and {@code fieldName} is set.
+     */
+    private record Owner(ClassNode cls, String methodShortId, String fieldName) {
+    }
+
+    private final String[] values;
+    private final Owner[][] owners;
+    private final long retainedBytes;
+
+    private StringIndex(String[] values, Owner[][] owners) {
+        this.values = values;
+        this.owners = owners;
+        this.retainedBytes = measure(values, owners);
+    }
+
+    private static long measure(String[] values, Owner[][] owners) {
+        long bytes = HeapSize.array(values.length, HeapSize.REFERENCE) + HeapSize.array(owners.length, HeapSize.REFERENCE);
+        // a method's short id is one string shared by all its owner entries
+        Set<String> methodIds = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < values.length; i++) {
+            bytes += HeapSize.string(values[i]) + HeapSize.array(owners[i].length, HeapSize.REFERENCE)
+                    + owners[i].length * HeapSize.object(3 * HeapSize.REFERENCE);
+            for (Owner owner : owners[i]) {
+                if (owner.methodShortId() != null && methodIds.add(owner.methodShortId())) {
+                    bytes += HeapSize.string(owner.methodShortId());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Scans all classes in parallel and builds the index.
+     */
+    public static StringIndex build(List<ClassNode> classes, BackgroundIndex.Progress progress) {
+        progress.setTotal(classes.size());
+        Map<String, List<Owner>> merged = classes.parallelStream()
+                .map(cls -> {
+                    Map<String, List<Owner>> found = collect(cls);
+                    progress.advance();
+                    return found;
+                })
+                .reduce(StringIndex::merge)
+                .orElseGet(HashMap::new);
+
+        String[] values = merged.keySet().toArray(new String[0]);
+        Arrays.sort(values);
+        Owner[][] owners = new Owner[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            owners[i] = merged.get(values[i]).toArray(new Owner[0]);
+        }
+        return new StringIndex(values, owners);
+    }
+
+    private static Map<String, List<Owner>> collect(ClassNode cls) {
+        Map<String, List<Owner>> found = new HashMap<>();
+        BytecodeScanner.scan(cls, new BytecodeScanner.Visitor() {
+            private String currentMethod;
+
+            @Override
+            public void visitField(IFieldData field) {
+                for (IJadxAttribute attr : field.getAttributes()) {
+                    if (attr.getAttrType() == JadxAttrType.CONSTANT_VALUE) {
+                        EncodedValue value = (EncodedValue) attr;
+                        if (value.getType() == EncodedType.ENCODED_STRING) {
+                            found.computeIfAbsent((String) value.getValue(), k -> new ArrayList<>())
+                                    .add(new Owner(cls, null, field.getName()));
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void visitMethod(IMethodData method) {
+                currentMethod = BytecodeScanner.shortId(method.getMethodRef());
+            }
+
+            @Override
+            public void visitInsn(IMethodData method, InsnData insn) {
+                if (insn.getOpcode() != Opcode.CONST_STRING) {
+                    return;
+                }
+                String value = insn.getIndexAsString();
+                if (value == null) {
+                    return;
+                }
+                // record each (value, method) pair once, even if the literal is loaded repeatedly
+                List<Owner> list = found.computeIfAbsent(value, k -> new ArrayList<>());
+                Owner last = list.isEmpty() ? null : list.get(list.size() - 1);
+                if (last == null || !currentMethod.equals(last.methodShortId())) {
+                    list.add(new Owner(cls, currentMethod, null));
+                }
+            }
+        });
+        return found;
+    }
+
+    private static Map<String, List<Owner>> merge(Map<String, List<Owner>> a, Map<String, List<Owner>> b) {
+        Map<String, List<Owner>> into = a.size() >= b.size() ? a : b;
+        Map<String, List<Owner>> from = into == a ? b : a;
+        from.forEach((k, v) -> into.merge(k, v, (x, y) -> {
+            x.addAll(y);
+            return x;
+        }));
+        return into;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Runs a query against the index and returns one page of hits.
+     *
+     * @param query      prefix, substring or regex, depending on {@code mode}
+     * @param mode       how to match {@code query} against string values
+     * @param ignoreCase case-insensitive matching
+     * @param offset     number of hits to skip
+     * @param limit      maximum number of hits to return
+     * @return JSON object with the total hit count and the requested page
+     */
+    public JSONObject search(String query, Mode mode, boolean ignoreCase, int offset, int limit) {
+        int[] matched = match(query, mode, ignoreCase);
+
+        int total = 0;
+        JSONArray results = new JSONArray();
+        for (int id : matched) {
+            for (Owner owner : owners[id]) {
+                if (total >= offset && results.length() < limit) {
+                    results.put(toJson(values[id], owner));
+                }
+                total++;
+            }
+        }
+
+        return new JSONObject()
+                .put("query", query)
+                .put("mode", mode.name().toLowerCase())
+                .put("total", total)
+                .put("offset", offset)
+                .put("limit", limit)
+                .put("results", results);
+    }
+
+    private int[] match(String query, Mode mode, boolean ignoreCase) {
+        if (mode == Mode.PREFIX && !ignoreCase) {
+            int from = lowerBound(query);
+            int to = from;
+            while (to < values.length && values[to].startsWith(query)) {
+                to++;
+            }
+            return IntStream.range(from, to).toArray();
+        }
+
+        if (mode == Mode.REGEX) {
+            Pattern pattern = Pattern.compile(query, ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+            return IntStream.range(0, values.length).parallel()
+                    .filter(i -> pattern.matcher(values[i]).find())
+                    .toArray();
+        }
+
+        String needle = ignoreCase ? query.toLowerCase() : query;
+        return IntStream.range(0, values.length).parallel()
+                .filter(i -> {
+                    String value = ignoreCase ? values[i].toLowerCase() : values[i];
+                    return mode == Mode.PREFIX ? value.startsWith(needle) : value.contains(needle);
+                })
+                .toArray();
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static JSONObject toJson(String value, Owner owner) {
+        JSONObject hit = new JSONObject()
+                .put("value", value)
+                .put("class_name", owner.cls().getFullName());
+        if (owner.fieldName() != null) {
+            hit.put("field_name", owner.fieldName());
+        } else {
+            MethodNode mth = owner.cls().searchMethodByShortId(owner.methodShortId());
+            hit.put("method_name", mth != null ? mth.getAlias() : owner.methodShortId());
+        }
+        return hit;
+    }
+}
@@ -0,0 +1,392 @@
+package com.mobilehackinglab.jadxplugin;
+
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Names of all classes (inner ones included), methods and fields, stored compactly enough
+ * to index APKs with millions of members.
+ *
+ * <p>Every symbol gets an {@code int} id: classes first, then methods, then fields. Distinct
+ * names are stored once as UTF-8 in a single byte arena, sorted in code point order and
+ * addressed by {@code int} offsets, so a name id is also its rank and prefixes are found by
+ * binary search. An open-addressing table of name ids finds exact names, and a sorted
+ * posting list of symbol ids per name (all lists in one {@code int[]}) gives the symbols
+ * carrying it. Methods and fields refer to their class id and their position in it. No
+ * per-symbol objects are kept, so a symbol typically costs 20-40 bytes.</p>
+ */
+public final class SymbolTable implements BackgroundIndex.Sized {
+
+    public enum Kind {
+        CLASS, METHOD, FIELD
+    }
+
+    private final ClassNode[] classes;
+    private final int methodCount;
+    private final byte[] arena;
+    private final int[] nameOffsets;
+    private final int[] hashSlots;
+    private final int[] postingStarts;
+    private final int[] postings;
+    private final int[] symbolNames;
+    private final int[] memberOwners;
+    private final int[] memberIndexes;
+    private final long retainedBytes;
+
+    private SymbolTable(ClassNode[] classes, int methodCount, byte[] arena, int[] nameOffsets, int[] postingStarts,
+                        int[] postings, int[] symbolNames, int[] memberOwners, int[] memberIndexes) {
+        this.classes = classes;
+        this.methodCount = methodCount;
+        this.arena = arena;
+        this.nameOffsets = nameOffsets;
+        this.postingStarts = postingStarts;
+        this.postings = postings;
+        this.symbolNames = symbolNames;
+        this.memberOwners = memberOwners;
+        this.memberIndexes = memberIndexes;
+        this.hashSlots = buildHashSlots();
+        this.retainedBytes = HeapSize.object(9 * HeapSize.REFERENCE + 4 + 8)
+                + HeapSize.array(classes.length, HeapSize.REFERENCE)
+                + HeapSize.array(arena.length, 1)
+                + HeapSize.array(nameOffsets.length, 4)
+                + HeapSize.array(hashSlots.length, 4)
+                + HeapSize.array(postingStarts.length, 4)
+                + HeapSize.array(postings.length, 4)
+                + HeapSize.array(symbolNames.length, 4)
+                + HeapSize.array(memberOwners.length, 4)
+                + HeapSize.array(memberIndexes.length, 4);
+    }
+
+    /**
+     * Collects the names of the given classes and their members. Names are current aliases,
+     * so the table has to be rebuilt after renames.
+     */
+    public static SymbolTable build(List<ClassNode> classList, BackgroundIndex.Progress progress) {
+        progress.setTotal(classList.size());
+        ClassNode[] classes = classList.toArray(new ClassNode[0]);
+        int methodCount = 0;
+        int memberCount = 0;
+        for (ClassNode cls : classes) {
+            methodCount += cls.getMethods().size();
+            memberCount += cls.getMethods().size() + cls.getFields().size();
+        }
+
+        // the strings are jadx's own aliases and only referenced while building
+        String[] names = new String[classes.length + memberCount];
+        int[] memberOwners = new int[memberCount];
+        int[] memberIndexes = new int[memberCount];
+        int method = classes.length;
+        int field = classes.length + methodCount;
+        for (int c = 0; c < classes.length; c++) {
+            ClassNode cls = classes[c];
+            names[c] = cls.getFullName();
+            List<MethodNode> methods = cls.getMethods();
+            for (int i = 0; i < methods.size(); i++, method++) {
+                names[method] = methods.get(i).getAlias();
+                memberOwners[method - classes.length] = c;
+                memberIndexes[method - classes.length] = i;
+            }
+            List<FieldNode> fields = cls.getFields();
+            for (int i = 0; i < fields.size(); i++, field++) {
+                names[field] = fields.get(i).getAlias();
+                memberOwners[field - classes.length] = c;
+                memberIndexes[field - classes.length] = i;
+            }
+            progress.advance();
+        }
+
+        String[] distinct = new HashSet<>(Arrays.asList(names)).toArray(new String[0]);
+        Arrays.sort(distinct, SymbolTable::compareCodePoints);
+        Map<String, Integer> ids = new HashMap<>(distinct.length * 2);
+        ByteArrayOutputStream arena = new ByteArrayOutputStream();
+        int[] nameOffsets = new int[distinct.length + 1];
+        for (int i = 0; i < distinct.length; i++) {
+            ids.put(distinct[i], i);
+            arena.writeBytes(distinct[i].getBytes(StandardCharsets.UTF_8));
+            nameOffsets[i + 1] = arena.size();
+        }
+
+        int[] symbolNames = new int[names.length];
+        int[] postingStarts = new int[distinct.length + 1];
+        for (int s = 0; s < names.length; s++) {
+            symbolNames[s] = ids.get(names[s]);
+            postingStarts[symbolNames[s] + 1]++;
+        }
+        for (int i = 0; i < distinct.length; i++) {
+            postingStarts[i + 1] += postingStarts[i];
+        }
+        // filled in symbol order, so every posting list comes out sorted
+        int[] postings = new int[names.length];
+        int[] next = Arrays.copyOf(postingStarts, distinct.length);
+        for (int s = 0; s < names.length; s++) {
+            postings[next[symbolNames[s]]++] = s;
+        }
+        return new SymbolTable(classes, methodCount, arena.toByteArray(), nameOffsets, postingStarts, postings,
+                symbolNames, memberOwners, memberIndexes);
+    }
+
+    /**
+     * Compares strings in code point order, which is the byte order of their UTF-8 encoding.
+     */
+    static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return codePointRank(x) - codePointRank(y);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Moves surrogates above U+E000..U+FFFF, where the code points they encode belong.
+     */
+    private static int codePointRank(char c) {
+        if (c < 0xD800) {
+            return c;
+        }
+        return c < 0xE000 ? c + 0x2000 : c - 0x800;
+    }
+
+    private int[] buildHashSlots() {
+        int capacity = Integer.highestOneBit(Math.max(2, nameCount() * 2 - 1)) << 1;
+        int[] slots = new int[capacity];
+        for (int id = 0; id < nameCount(); id++) {
+            int slot = hash(arena, nameOffsets[id], nameOffsets[id + 1]) & (capacity - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = id + 1;
+        }
+        return slots;
+    }
+
+    /**
+     * FNV-1a over UTF-8 bytes, with the high bits folded in for the power-of-two table.
+     */
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    public int classCount() {
+        return classes.length;
+    }
+
+    public int methodCount() {
+        return methodCount;
+    }
+
+    public int fieldCount() {
+        return memberOwners.length - methodCount;
+    }
+
+    public int nameCount() {
+        return nameOffsets.length - 1;
+    }
+
+    /**
+     * Number of symbols: classes, methods and fields.
+     */
+    @Override
+    public int size() {
+        return symbolNames.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Returns the id of a name, or {@code -1} if no symbol has it.
+     */
+    public int findName(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = hashSlots.length - 1;
+        int slot = hash(key, 0, key.length) & mask;
+        while (hashSlots[slot] != 0) {
+            int id = hashSlots[slot] - 1;
+            if (Arrays.equals(arena, nameOffsets[id], nameOffsets[id + 1], key, 0, key.length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the name with the given id.
+     */
+    public String name(int nameId) {
+        return new String(arena, nameOffsets[nameId], nameOffsets[nameId + 1] - nameOffsets[nameId],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the ids of the names accepted by the filter, in name order. Names are tested in parallel.
+     */
+    public int[] matchNames(Predicate<String> filter) {
+        return IntStream.range(0, nameCount()).parallel()
+                .filter(id -> filter.test(name(id)))
+                .toArray();
+    }
+
+    /**
+     * Returns the range {@code [from, to)} of name ids starting with the prefix, found by
+     * binary search over the sorted arena.
+     */
+    public int[] prefixRange(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = bound(key, false);
+        int to = bound(key, true);
+        return new int[]{from, to};
+    }
+
+    /**
+     * Returns the first name id that compares greater than or equal to the key, or greater
+     * than the key when names are cut to its length (i.e. past all names it prefixes).
+     */
+    private int bound(byte[] key, boolean pastPrefix) {
+        int lo = 0;
+        int hi = nameCount();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int start = nameOffsets[mid];
+            int end = pastPrefix ? Math.min(nameOffsets[mid + 1], start + key.length) : nameOffsets[mid + 1];
+            int cmp = Arrays.compareUnsigned(arena, start, end, key, 0, key.length);
+            if (pastPrefix ? cmp <= 0 : cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Finds the symbols of the given kinds whose names match the pattern and returns one
+     * page of them, ordered by name. An exact name is looked up in the hash table; otherwise
+     * the names sharing the pattern's literal prefix are matched in parallel.
+     *
+     * @param maxHits hits counted at most; the result is marked truncated past that
+     */
+    public JSONObject search(NamePattern pattern, Set<Kind> kinds, int offset, int limit, int maxHits) {
+        int[] nameIds;
+        int scanned;
+        if (pattern.exactName() != null) {
+            int id = findName(pattern.exactName());
+            nameIds = id >= 0 ? new int[]{id} : new int[0];
+            scanned = nameIds.length;
+        } else {
+            int[] range = prefixRange(pattern.literalPrefix());
+            nameIds = IntStream.range(range[0], range[1]).parallel()
+                    .filter(id -> pattern.matches(name(id)))
+                    .toArray();
+            scanned = range[1] - range[0];
+        }
+
+        int total = 0;
+        boolean truncated = false;
+        JSONArray results = new JSONArray();
+        hits:
+        for (int nameId : nameIds) {
+            for (int p = postingStarts[nameId]; p < postingStarts[nameId + 1]; p++) {
+                int symbol = postings[p];
+                if (!kinds.contains(kind(symbol))) {
+                    continue;
+                }
+                if (total == maxHits) {
+                    truncated = true;
+                    break hits;
+                }
+                if (total >= offset && results.length() < limit) {
+                    results.put(toJson(symbol, nameId));
+                }
+                total++;
+            }
+        }
+
+        return new JSONObject()
+                .put("total", total)
+                .put("truncated", truncated)
+                .put("names_scanned", scanned)
+                .put("offset", offset)
+                .put("limit", limit)
+                .put("results", results);
+    }
+
+    private JSONObject toJson(int symbol, int nameId) {
+        Kind kind = kind(symbol);
+        JSONObject hit = new JSONObject()
+                .put("kind", kind.name().toLowerCase())
+                .put("class_name", classOf(symbol).getFullName());
+        if (kind == Kind.METHOD) {
+            hit.put("method_name", name(nameId));
+        } else if (kind == Kind.FIELD) {
+            hit.put("field_name", name(nameId));
+        }
+        return hit;
+    }
+
+    /**
+     * Returns the ids of the symbols with the given name, in ascending order.
+     */
+    public int[] symbolsNamed(int nameId) {
+        return Arrays.copyOfRange(postings, postingStarts[nameId], postingStarts[nameId + 1]);
+    }
+
+    public Kind kind(int symbol) {
+        if (symbol < classes.length) {
+            return Kind.CLASS;
+        }
+        return symbol < classes.length + methodCount ? Kind.METHOD : Kind.FIELD;
+    }
+
+    /**
+     * Returns the name id of a symbol.
+     */
+    public int nameOf(int symbol) {
+        return symbolNames[symbol];
+    }
+
+    /**
+     * Returns the class itself for a class symbol, the declaring class for a method or field.
+     */
+    public ClassNode classOf(int symbol) {
+        return symbol < classes.length ? classes[symbol] : classes[memberOwners[symbol - classes.length]];
+    }
+
+    /**
+     * Returns the method of a {@link Kind#METHOD} symbol.
+     */
+    public MethodNode method(int symbol) {
+        return classOf(symbol).getMethods().get(memberIndexes[symbol - classes.length]);
+    }
+
+    /**
+     * Returns the field of a {@link Kind#FIELD} symbol.
+     */
+    public FieldNode field(int symbol) {
+        return classOf(symbol).getFields().get(memberIndexes[symbol - classes.length]);
+    }
+}
@@ -0,0 +1,281 @@
+package com.mobilehackinglab.jadxplugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listening endpoints the HTTP server can accept connections on: a TCP port, or a
+ * Unix domain socket for clients on the same machine.
+ */
+public final class Transport {
+
+    /**
+     * An accepted client connection.
+     */
+    public interface Connection extends Closeable {
+        InputStream getInputStream() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+    }
+
+    /**
+     * A bound listening endpoint.
+     */
+    public interface Server extends Closeable {
+        /**
+         * Blocks until a client connects.
+         */
+        Connection accept() throws IOException;
+
+        /**
+         * Returns the address clients connect to, e.g. {@code http://127.0.0.1:8085} or {@code unix:/tmp/jadx-mcp.sock}.
+         */
+        String describe();
+    }
+
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFSOCK = 0140000;
+
+    private Transport() {
+    }
+
+    /**
+     * Listens on a TCP port.
+     *
+     * @param readTimeoutMillis socket read timeout of accepted connections
+     */
+    public static Server tcp(String host, int port, int backlog, int readTimeoutMillis) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, backlog, InetAddress.getByName(host));
+        return new Server() {
+            @Override
+            public Connection accept() throws IOException {
+                Socket socket = serverSocket.accept();
+                socket.setSoTimeout(readTimeoutMillis);
+                return new Connection() {
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return socket.getInputStream();
+                    }
+
+                    @Override
+                    public OutputStream getOutputStream() throws IOException {
+                        return socket.getOutputStream();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        socket.close();
+                    }
+                };
+            }
+
+            @Override
+            public String describe() {
+                return "http://" + host + ":" + port;
+            }
+
+            @Override
+            public void close() throws IOException {
+                serverSocket.close();
+            }
+        };
+    }
+
+    /**
+     * Listens on a Unix domain socket, made accessible to the current user only. A socket
+     * file left by a previous run is replaced; any other file at the path is left alone
+     * and the call fails.
+     *
+     * <p>The socket is bound in a new directory only the current user can enter, restricted
+     * to the user and then moved to {@code path}, so nobody else can connect while it still
+     * has the default permissions.</p>
+     *
+     * @param readTimeoutMillis how long a read on an accepted connection may block before
+     *                          the connection is closed, like the TCP socket read timeout
+     */
+    public static Server unix(Path path, int backlog, int readTimeoutMillis) throws IOException {
+        removeStaleSocket(path);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            bindPrivately(channel, path, backlog);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        // channel streams have no read timeout, so a watchdog closes connections stuck in a read
+        Set<UnixConnection> connections = ConcurrentHashMap.newKeySet();
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-unix-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+        long period = Math.max(100, Math.min(1000, readTimeoutMillis / 4));
+        watchdog.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (UnixConnection connection : connections) {
+                connection.closeIfStalled(now, timeoutNanos);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        return new Server() {
+            @Override
+            public Connection accept() throws IOException {
+                UnixConnection connection = new UnixConnection(channel.accept(), connections);
+                connections.add(connection);
+                return connection;
+            }
+
+            @Override
+            public String describe() {
+                return "unix:" + path;
+            }
+
+            @Override
+            public void close() throws IOException {
+                watchdog.shutdownNow();
+                channel.close();
+                Files.deleteIfExists(path);
+            }
+        };
+    }
+
+    private static void bindPrivately(ServerSocketChannel channel, Path path, int backlog) throws IOException {
+        Path dir;
+        try {
+            dir = Files.createTempDirectory(path.toAbsolutePath().getParent(), ".jadx-mcp-",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system; keep the default permissions
+            channel.bind(UnixDomainSocketAddress.of(path), backlog);
+            return;
+        }
+        Path bound = dir.resolve("s");
+        try {
+            channel.bind(UnixDomainSocketAddress.of(bound), backlog);
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Deletes a socket file nobody listens on any more.
+     *
+     * @throws IOException if the path is not a socket, or a server is still listening on it
+     */
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!isSocket(path)) {
+            throw new IOException("Cannot listen on " + path + ": the file exists and is not a socket");
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+            throw new IOException("Cannot listen on " + path + ": another server is listening on it");
+        } catch (ConnectException e) {
+            // nobody accepts connections: left over from a previous run
+        }
+        Files.delete(path);
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // no unix attribute view; sockets are among the "other" file types
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    /**
+     * A connection on a Unix domain socket that records when a read started, so the
+     * watchdog can close it once a read blocks for longer than the timeout.
+     */
+    private static final class UnixConnection implements Connection {
+        private final SocketChannel channel;
+        private final Set<UnixConnection> connections;
+        private final InputStream in;
+        private volatile long readingSince;
+
+        UnixConnection(SocketChannel channel, Set<UnixConnection> connections) {
+            this.channel = channel;
+            this.connections = connections;
+            InputStream channelIn = Channels.newInputStream(channel);
+            this.in = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    readingSince = System.nanoTime();
+                    try {
+                        return channelIn.read();
+                    } finally {
+                        readingSince = 0;
+                    }
+                }
+
+                @Override
+                public int read(byte[] bytes, int off, int len) throws IOException {
+                    readingSince = System.nanoTime();
+                    try {
+                        return channelIn.read(bytes, off, len);
+                    } finally {
+                        readingSince = 0;
+                    }
+                }
+            };
+        }
+
+        void closeIfStalled(long now, long timeoutNanos) {
+            long since = readingSince;
+            if (since != 0 && now - since > timeoutNanos) {
+                try {
+                    close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return Channels.newOutputStream(channel);
+        }
+
+        @Override
+        public void close() throws IOException {
+            connections.remove(this);
+            channel.close();
+        }
+    }
+}